@@ -11,9 +11,10 @@ import me.leoko.advancedban.configuration.Messages;
 import me.leoko.advancedban.configuration.MySQLConfiguration;
 import me.leoko.advancedban.manager.*;
 import me.leoko.advancedban.punishment.InterimData;
+import me.leoko.advancedban.punishment.MuteState;
 import me.leoko.advancedban.punishment.Punishment;
 import me.leoko.advancedban.punishment.PunishmentManager;
-import me.leoko.advancedban.punishment.PunishmentType;
+import me.leoko.advancedban.utils.IpKey;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -115,6 +116,7 @@ public abstract class AdvancedBan {
     }
 
     public final void onDisable() {
+        PunishmentManager.getInstance().onDisable();
         DatabaseManager.getInstance().onDisable();
 
         if (getConfiguration().isDetailedDisableMessage()) {
@@ -203,6 +205,15 @@ public abstract class AdvancedBan {
     }
 
     public Optional<String> onPreLogin(String name, UUID uuid, InetAddress address) {
+        if (PunishmentManager.getInstance().isBanIndexReady()) {
+            Optional<Punishment> punishment = PunishmentManager.getInstance().getIndexedBan(uuid, address);
+            if (!punishment.isPresent()) {
+                addresses.put(name.toLowerCase(), address);
+                addresses.put(uuid, address);
+            }
+            return punishment.map(pun -> PunishmentManager.getInstance().getLayoutBSN(pun));
+        }
+
         InterimData interimData = PunishmentManager.getInstance().load(uuid, name, address);
 
         Optional<Punishment> punishment = PunishmentManager.getInstance().getBan(interimData);
@@ -218,6 +229,21 @@ public abstract class AdvancedBan {
 
     public void onLogin(AdvancedBanPlayer player) {
         registerPlayer(player);
+
+        if (PunishmentManager.getInstance().isCached(player.getUniqueId())) {
+            PunishmentManager.getInstance().refreshMuteState(player.getUniqueId());
+        } else {
+            // The ban index admitted the player without loading their punishments
+            runAsyncTask(() -> {
+                PunishmentManager.getInstance().acceptData(PunishmentManager.getInstance()
+                        .load(player.getUniqueId(), player.getName(), player.getAddress().getAddress()));
+                if (isOnline(player.getUniqueId())) {
+                    PunishmentManager.getInstance().refreshMuteState(player.getUniqueId());
+                } else {
+                    PunishmentManager.getInstance().discard(player);
+                }
+            });
+        }
     }
 
     protected final void registerPlayer(AdvancedBanPlayer player) {
@@ -240,23 +266,21 @@ public abstract class AdvancedBan {
     }
 
     public boolean onChat(AdvancedBanPlayer player, String message) {
-        Optional<List<String>> layout = PunishmentManager.getInstance().getPunishment(player.getUniqueId(), PunishmentType.MUTE)
-                .map(pun -> PunishmentManager.getInstance().getLayout(pun));
-        if (layout.isPresent()) {
-            layout.get().forEach(player::sendMessage);
-            return true;
+        MuteState mute = PunishmentManager.getInstance().getMuteState(player.getUniqueId());
+        if (mute == null || mute.isExpired()) {
+            return false;
         }
-        return false;
+        mute.getLayout().forEach(player::sendMessage);
+        return true;
     }
 
     public boolean onCommand(AdvancedBanPlayer player, String command) {
-        Optional<List<String>> layout = PunishmentManager.getInstance().getPunishment(player.getUniqueId(), PunishmentType.MUTE)
-                .map(pun -> PunishmentManager.getInstance().getLayout(pun));
-        if (layout.isPresent() && isMutedCommand(command)) {
-            layout.get().forEach(player::sendMessage);
-            return true;
+        MuteState mute = PunishmentManager.getInstance().getMuteState(player.getUniqueId());
+        if (mute == null || mute.isExpired() || !isMutedCommand(command)) {
+            return false;
         }
-        return false;
+        mute.getLayout().forEach(player::sendMessage);
+        return true;
     }
 
     public boolean isMutedCommand(String command) {
@@ -287,9 +311,14 @@ public abstract class AdvancedBan {
 
         if (!player.isPresent()) {
             try {
-                String[] addressPort = val.split(":");
-                InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(addressPort[0]), Integer.parseInt(addressPort[1]));
-                player = Optional.ofNullable(players.get(address));
+                // ip:port, IPv6 addresses are written as [ip]:port
+                int colon = val.lastIndexOf(':');
+                boolean bracketed = val.startsWith("[") && colon > 0 && val.charAt(colon - 1) == ']';
+                IpKey ip = colon < 0 ? null : IpKey.parse(val, bracketed ? 1 : 0, bracketed ? colon - 1 : colon);
+                if (ip != null) {
+                    InetSocketAddress address = new InetSocketAddress(ip.toInetAddress(), Integer.parseInt(val.substring(colon + 1)));
+                    player = Optional.ofNullable(players.get(address));
+                }
             } catch (Exception e) {
                 // Ignore
             }
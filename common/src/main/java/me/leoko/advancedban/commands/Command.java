@@ -9,14 +9,13 @@ import me.leoko.advancedban.manager.DatabaseManager;
 import me.leoko.advancedban.manager.MessageManager;
 import me.leoko.advancedban.manager.UUIDManager;
 import me.leoko.advancedban.punishment.Punishment;
+import me.leoko.advancedban.punishment.PunishmentListing;
 import me.leoko.advancedban.punishment.PunishmentManager;
 import me.leoko.advancedban.punishment.PunishmentType;
 import me.leoko.advancedban.utils.GeoLocation;
-import me.leoko.advancedban.utils.SQLQuery;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -155,18 +154,12 @@ public enum Command {
                 } else {
                     PunishmentType type = PunishmentType.valueOf(input.next());
 
-                    Object target;
-                    if (!input.getPrimary().matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
+                    Object target = CommandUtils.parseAddress(input.getPrimary());
+                    if (target == null) {
                         target = CommandUtils.processName(input);
                         if (target == null)
                             return;
                     } else {
-                        try {
-                            target = InetAddress.getByName(input.getPrimary());
-                        } catch (UnknownHostException e) {
-                            AdvancedBanLogger.getInstance().logException(e);
-                            return;
-                        }
                         input.next();
                     }
 
@@ -190,23 +183,19 @@ public enum Command {
             "change-reason"),
 
     BAN_LIST("ab.banlist",
-            "([1-9][0-9]*)?",
-            new ListCommand(
-                    target -> PunishmentManager.getInstance().getPunishments(SQLQuery.SELECT_ALL_PUNISHMENTS_LIMIT, 150),
-                    "Banlist", false, false),
+            "([1-9][0-9]*(:[0-9a-z]+:[0-9]+)?)?",
+            new ListCommand(PunishmentListing.ACTIVE, "Banlist", false, false),
             "Banlist.Usage",
             "banlist"),
 
     HISTORY("ab.history",
-            ".+( [1-9][0-9]*)?",
-            new ListCommand(
-                    target -> PunishmentManager.getInstance().getPunishments(target, null, false),
-                    "History", true, true),
+            ".+( [1-9][0-9]*(:[0-9a-z]+:[0-9]+)?)?",
+            new ListCommand(PunishmentListing.HISTORY, "History", true, true),
             "Banlist.Usage",
             "history"),
 
     WARNS(null,
-            ".+( [1-9][0-9]*)?|\\S+",
+            ".+( [1-9][0-9]*(:[0-9a-z]+:[0-9]+)?)?|\\S+",
             input -> {
                 if (input.getPrimary().matches("\\S+")) {
                     if (!input.getSender().hasPermission("ab.warns.other")) {
@@ -214,19 +203,14 @@ public enum Command {
                         return;
                     }
 
-                    new ListCommand(
-                            target -> PunishmentManager.getInstance().getPunishments(target, PunishmentType.WARNING, true),
-                            "Warns", false, true).accept(input);
+                    new ListCommand(PunishmentListing.WARNS, "Warns", false, true).accept(input);
                 } else {
                     if (!input.getSender().hasPermission("ab.warns.own")) {
                         input.getSender().sendCustomMessage("General.NoPerms", true);
                         return;
                     }
 
-                    String name = input.sender.getName();
-                    new ListCommand(
-                            target -> PunishmentManager.getInstance().getPunishments(name, PunishmentType.WARNING, true),
-                            "Warns", false, false).accept(input);
+                    new ListCommand(PunishmentListing.WARNS, "Warns", false, false).accept(input);
                 }
             },
             "Warns.Usage",
@@ -280,6 +264,8 @@ public enum Command {
                 sender.sendMessage("§c§lAdvancedBan v2 §cSystemPrefs");
                 sender.sendMessage("§cServer-Time §8» §7" + calendar.get(Calendar.HOUR_OF_DAY) + ":" + calendar.get(Calendar.MINUTE));
                 sender.sendMessage("§cYour UUID (Intern) §8» §7" + AdvancedBan.get().getInternalUUID(sender.getName()));
+                sender.sendMessage("§cOffline-Cache (Hits/Misses) §8» §7" + PunishmentManager.getInstance().getOfflineCacheHits()
+                        + "/" + PunishmentManager.getInstance().getOfflineCacheMisses());
                 if (input.hasNext()) {
                     String target = input.getPrimaryData();
                     sender.sendMessage("§c" + target + "'s UUID (Intern) §8» §7" + AdvancedBan.get().getInternalUUID(target));
@@ -298,6 +284,7 @@ public enum Command {
                         if (sender.hasPermission("ab.reload")) {
                             try {
                                 AdvancedBan.get().loadFiles();
+                                PunishmentManager.getInstance().clearLayouts();
                             } catch (IOException e) {
                                 AdvancedBanLogger.getInstance().logException(e);
                                 sender.sendMessage("§c§lAdvancedBan §8§l» §7Failed to reload files!");
@@ -3,14 +3,14 @@ package me.leoko.advancedban.commands;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.experimental.UtilityClass;
 import me.leoko.advancedban.AdvancedBan;
-import me.leoko.advancedban.AdvancedBanLogger;
 import me.leoko.advancedban.manager.UUIDManager;
 import me.leoko.advancedban.punishment.Punishment;
 import me.leoko.advancedban.punishment.PunishmentManager;
 import me.leoko.advancedban.punishment.PunishmentType;
+import me.leoko.advancedban.utils.IpKey;
+import me.leoko.advancedban.utils.Subnet;
 
 import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -31,16 +31,22 @@ public class CommandUtils {
         return uuid;
     }
 
-    // Removes name/ip argument and returns ip (null if failed)
-    public InetAddress processIP(Command.CommandInput input) {
+    // Returns the IPv4/IPv6 address or subnet written in the text (null if it is none)
+    public Object parseAddress(String text) {
+        Subnet subnet = Subnet.parse(text);
+        if (subnet != null) {
+            return subnet;
+        }
+        IpKey ip = IpKey.parse(text);
+        return ip == null ? null : ip.toInetAddress();
+    }
+
+    // Removes name/ip/subnet argument and returns ip or subnet (null if failed)
+    public Object processIP(Command.CommandInput input) {
         String name = input.next().toLowerCase();
-        if (name.matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
-            try {
-                return InetAddress.getByName(name);
-            } catch (UnknownHostException e) {
-                AdvancedBanLogger.getInstance().logException(e);
-                return null;
-            }
+        Object address = parseAddress(name);
+        if (address != null) {
+            return address;
         } else {
             InetAddress ip = AdvancedBan.get().getAddress(name).orElse(null);
 
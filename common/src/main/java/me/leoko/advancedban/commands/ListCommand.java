@@ -1,27 +1,26 @@
 package me.leoko.advancedban.commands;
 
 import me.leoko.advancedban.AdvancedBan;
-import me.leoko.advancedban.AdvancedBanLogger;
 import me.leoko.advancedban.manager.MessageManager;
+import me.leoko.advancedban.manager.UUIDManager;
 import me.leoko.advancedban.punishment.Punishment;
+import me.leoko.advancedban.punishment.PunishmentListing;
 import me.leoko.advancedban.punishment.PunishmentManager;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 public class ListCommand implements Consumer<Command.CommandInput> {
-    private Function<Object, List<Punishment>> listSupplier;
+    private static final int PAGE_SIZE = 5;
+
+    private PunishmentListing listing;
     private String config;
     private boolean history;
     private boolean hasTarget;
 
-    public ListCommand(Function<Object, List<Punishment>> listSupplier, String config, boolean history, boolean hasTarget) {
-        this.listSupplier = listSupplier;
+    public ListCommand(PunishmentListing listing, String config, boolean history, boolean hasTarget) {
+        this.listing = listing;
         this.config = config;
         this.history = history;
         this.hasTarget = hasTarget;
@@ -32,32 +31,40 @@ public class ListCommand implements Consumer<Command.CommandInput> {
         String name = input.getPrimary();
         Object target = null;
         if (hasTarget) {
-            if (input.getPrimary().matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
-                try {
-                    target = InetAddress.getByName(input.getPrimary());
-                } catch (UnknownHostException e) {
-                    AdvancedBanLogger.getInstance().logException(e);
-                    return;
-                }
+            target = CommandUtils.parseAddress(input.getPrimary());
+            if (target != null) {
+                input.next();
             } else {
                 target = CommandUtils.processName(input);
                 if (target == null)
                     return;
             }
+        } else if (listing.isTargeted()) {
+            name = input.getSender().getName();
+            target = UUIDManager.getInstance().getUuid(name).orElse(null);
+            if (target == null) {
+                input.getSender().sendCustomMessage("General.FailedFetch", true, "NAME", name);
+                return;
+            }
         }
 
-        final List<Punishment> punishments = listSupplier.apply(target);
-        if (punishments.isEmpty()) {
+        final int count = PunishmentManager.getInstance().countPunishments(listing, target);
+        if (count == 0) {
             input.getSender().sendCustomMessage(config + ".NoEntries", true, "NAME", name);
             return;
         }
 
-        for (Punishment punishment : punishments)
-            if (punishment.isExpired())
-                PunishmentManager.getInstance().deletePunishment(punishment, true);
+        PunishmentListing.Cursor cursor = input.hasNext() ? PunishmentListing.Cursor.parse(input.getPrimary())
+                : PunishmentListing.Cursor.page(1);
+        if (cursor == null || count / (double) PAGE_SIZE + 1 <= cursor.getPage()) {
+            input.getSender().sendCustomMessage(config + ".OutOfIndex", true,
+                    "PAGE", cursor == null ? input.getPrimary() : cursor.getPage());
+            return;
+        }
+        int page = cursor.getPage();
 
-        int page = input.hasNext() ? Integer.parseInt(input.getPrimary()) : 1;
-        if (punishments.size() / 5.0 + 1 <= page) {
+        List<Punishment> punishments = PunishmentManager.getInstance().getPunishmentPage(listing, target, cursor, PAGE_SIZE);
+        if (punishments.isEmpty()) {
             input.getSender().sendCustomMessage(config + ".OutOfIndex", true, "PAGE", page);
             return;
         }
@@ -71,8 +78,7 @@ public class ListCommand implements Consumer<Command.CommandInput> {
 
         SimpleDateFormat format = new SimpleDateFormat(AdvancedBan.get().getConfiguration().getDateFormat());
 
-        for (int i = (page - 1) * 5; i < page * 5 && punishments.size() > i; i++) {
-            Punishment punishment = punishments.get(i);
+        for (Punishment punishment : punishments) {
             List<String> entryLayout = MessageManager.getMessageList(config + ".Entry",
                     "PREFIX", prefix,
                     "NAME", punishment.getName(),
@@ -88,12 +94,13 @@ public class ListCommand implements Consumer<Command.CommandInput> {
 
         input.getSender().sendCustomMessage(config + ".Footer", false,
                 "CURRENT_PAGE", page,
-                "TOTAL_PAGES", (punishments.size() / 5 + (punishments.size() % 5 != 0 ? 1 : 0)),
-                "COUNT", punishments.size());
+                "TOTAL_PAGES", (count / PAGE_SIZE + (count % PAGE_SIZE != 0 ? 1 : 0)),
+                "COUNT", count);
 
-        if (punishments.size() / 5.0 + 1 > page + 1) {
+        if (count / (double) PAGE_SIZE + 1 > page + 1) {
+            // The next page is looked up from the last entry shown here, so the database can seek to it
             input.getSender().sendCustomMessage(config + ".PageFooter", false,
-                    "NEXT_PAGE", (page + 1),
+                    "NEXT_PAGE", PunishmentListing.Cursor.after(page + 1, punishments.get(punishments.size() - 1)),
                     "NAME", name);
         }
     }
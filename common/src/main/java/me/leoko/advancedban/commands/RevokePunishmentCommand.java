@@ -1,12 +1,9 @@
 package me.leoko.advancedban.commands;
 
-import me.leoko.advancedban.AdvancedBanLogger;
 import me.leoko.advancedban.punishment.Punishment;
 import me.leoko.advancedban.punishment.PunishmentManager;
 import me.leoko.advancedban.punishment.PunishmentType;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.function.Consumer;
 
 public class RevokePunishmentCommand implements Consumer<Command.CommandInput> {
@@ -20,15 +17,8 @@ public class RevokePunishmentCommand implements Consumer<Command.CommandInput> {
     public void accept(Command.CommandInput input) {
         String name = input.getPrimary();
 
-        Object target;
-        if (name.matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
-            try {
-                target = InetAddress.getByName(name);
-            } catch (UnknownHostException e) {
-                AdvancedBanLogger.getInstance().logException(e);
-                return;
-            }
-        } else {
+        Object target = CommandUtils.parseAddress(name);
+        if (target == null) {
             target = CommandUtils.processName(input);
             if (target == null)
                 return;
@@ -50,6 +50,20 @@ public class Configuration {
     private int purgeLogDays = 10;
     @JsonProperty("Disable Prefix")
     private boolean prefixDisabled = false;
+    @JsonProperty("CompactIdentifiers")
+    private boolean compactIdentifiers = false;
+    @JsonProperty("BanIndex")
+    private boolean banIndex = false;
+    @JsonProperty("OfflineCache")
+    private OfflineCache offlineCache = new OfflineCache();
+    @JsonProperty("HistoryLimit")
+    private int historyLimit = 0;
+    @JsonProperty("HistoryWrites")
+    private HistoryWrites historyWrites = new HistoryWrites();
+    @JsonProperty("ChangeLog")
+    private ChangeLog changeLog = new ChangeLog();
+    @JsonProperty("Peers")
+    private Peers peers = new Peers();
 
     public static Configuration load(Path path) throws IOException {
         try (BufferedReader reader = Files.newBufferedReader(path)) {
@@ -72,6 +86,54 @@ public class Configuration {
         private UUIDApi backupApi = new UUIDApi("https://us.mc-api.net/v3/uuid/%NAME%", "uuid");
     }
 
+    @Getter
+    @ToString
+    public static class OfflineCache {
+        @JsonProperty("Size")
+        private int size = 1000;
+        @JsonProperty("Time")
+        private int time = 0;
+    }
+
+    @Getter
+    @ToString
+    public static class HistoryWrites {
+        @JsonProperty("Durability")
+        private Durability durability = Durability.SYNC;
+        @JsonProperty("FlushInterval")
+        private long flushInterval = 1000;
+        @JsonProperty("Capacity")
+        private int capacity = 1000;
+    }
+
+    @Getter
+    @ToString
+    public static class ChangeLog {
+        @JsonProperty("Enabled")
+        private boolean enabled = false;
+        @JsonProperty("PollInterval")
+        private long pollInterval = 500;
+        @JsonProperty("KeepTime")
+        private int keepTime = 3600;
+    }
+
+    @Getter
+    @ToString(exclude = "secret")
+    public static class Peers {
+        @JsonProperty("Enabled")
+        private boolean enabled = false;
+        @JsonProperty("Bind")
+        private String bind = "0.0.0.0:25590";
+        @JsonProperty("Secret")
+        private String secret = "";
+        @JsonProperty("Nodes")
+        private List<String> nodes = Collections.emptyList();
+    }
+
+    public enum Durability {
+        SYNC, BATCHED
+    }
+
     @Getter
     @ToString
     @AllArgsConstructor
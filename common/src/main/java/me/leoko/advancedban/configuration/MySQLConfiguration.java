@@ -34,5 +34,52 @@ public class MySQLConfiguration {
         private String password = "pw123";
         @JsonProperty("Port")
         private int port = 3306;
+        @JsonProperty("FetchSize")
+        private int fetchSize = 100;
+        @JsonProperty("Pool")
+        private Pool pool = new Pool();
+        @JsonProperty("Mirror")
+        private Mirror mirror = new Mirror();
+    }
+
+    @Getter
+    @ToString
+    public static class Mirror {
+        @JsonProperty("Enabled")
+        private boolean enabled = false;
+        @JsonProperty("SyncInterval")
+        private long syncInterval = 1000;
+        @JsonProperty("ReconcileInterval")
+        private long reconcileInterval = 600;
+    }
+
+    @Getter
+    @ToString
+    public static class Pool {
+        @JsonProperty("MinSize")
+        private int minSize = 2;
+        @JsonProperty("MaxSize")
+        private int maxSize = 10;
+        @JsonProperty("ConnectionTimeout")
+        private long connectionTimeout = 30000;
+        @JsonProperty("ValidationTimeout")
+        private int validationTimeout = 3;
+        @JsonProperty("ValidationThreshold")
+        private long validationThreshold = 5000;
+        @JsonProperty("IdleTimeout")
+        private long idleTimeout = 600000;
+        @JsonProperty("LeakDetectionThreshold")
+        private long leakDetectionThreshold = 0;
+
+        /**
+         * Settings for the embedded HSQLDB, whose connections cannot drop and only need a few threads.
+         */
+        public static Pool embedded() {
+            Pool pool = new Pool();
+            pool.minSize = 1;
+            pool.maxSize = 4;
+            pool.validationThreshold = Long.MAX_VALUE;
+            return pool;
+        }
     }
 }
@@ -6,11 +6,22 @@ import lombok.NoArgsConstructor;
 import me.leoko.advancedban.AdvancedBan;
 import me.leoko.advancedban.AdvancedBanLogger;
 import me.leoko.advancedban.configuration.MySQLConfiguration;
+import me.leoko.advancedban.utils.ConnectionPool;
+import me.leoko.advancedban.utils.IdentifierCodec;
+import me.leoko.advancedban.utils.PooledConnection;
 import me.leoko.advancedban.utils.SQLQuery;
 
+import me.leoko.advancedban.utils.RowMapper;
+import me.leoko.advancedban.utils.SchemaMigration;
+import me.leoko.advancedban.utils.Subnet;
+
+import java.net.InetAddress;
 import java.sql.*;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class DatabaseManager {
@@ -20,9 +31,19 @@ public class DatabaseManager {
 
     private static final AdvancedBanLogger logger = AdvancedBanLogger.getInstance();
     private MySQLConfiguration.MySQL configuration;
-    private Connection connection;
+    private ConnectionPool pool;
     private boolean failedMySQL = false;
     private boolean useMySQL;
+    private boolean maintenanceScheduled = false;
+    private int fetchSize = 0;
+    private static final int ENCODE_CHUNK_SIZE = 500;
+    private static final Pattern ADD_COLUMN = Pattern.compile("ALTER TABLE (\\w+) ADD COLUMN (\\w+)");
+    private static final Pattern CREATE_INDEX = Pattern.compile("CREATE INDEX (\\w+) ON (\\w+)");
+    private volatile boolean compactIdentifiers = false;
+    private volatile PunishmentMirror mirror;
+    private boolean mirrorScheduled = false;
+    // Statements to replay on the mirror once the transaction of the connection has been committed
+    private final Map<PooledConnection, List<Runnable>> mirrorPending = new ConcurrentHashMap<>();
 
     public void onEnable() {
         Optional<MySQLConfiguration> config = AdvancedBan.get().getMySQLConfiguration();
@@ -32,6 +53,7 @@ public class DatabaseManager {
         });
 
         useMySQL = config.isPresent() && !failedMySQL;
+        fetchSize = useMySQL ? configuration.getFetchSize() : 0;
 
         if (!useMySQL) {
             try {
@@ -42,42 +64,206 @@ public class DatabaseManager {
                 return;
             }
             try {
-                connection = DriverManager.getConnection("jdbc:hsqldb:file:" + AdvancedBan.get().getDataFolderPath() +
-                        "/data/storage;hsqldb.lock_file=false", "SA", "");
+                String url = "jdbc:hsqldb:file:" + AdvancedBan.get().getDataFolderPath() +
+                        "/data/storage;hsqldb.lock_file=false";
+                pool = new ConnectionPool(() -> DriverManager.getConnection(url, "SA", ""), MySQLConfiguration.Pool.embedded());
             } catch (SQLException ex) {
                 logger.info("Could not connect to HSQLDB-Server!");
             }
         }
 
+        if (!maintenanceScheduled) {
+            maintenanceScheduled = true;
+            AdvancedBan.get().scheduleRepeatingAsyncTask(() -> {
+                if (pool != null) {
+                    pool.maintain();
+                }
+            }, 20 * 30, 20 * 30);
+        }
+
         executeStatement(SQLQuery.CREATE_TABLE_PUNISHMENT);
         executeStatement(SQLQuery.CREATE_TABLE_PUNISHMENT_HISTORY);
+        executeStatement(SQLQuery.CREATE_TABLE_SCHEMA_VERSION);
+        migrateSchema();
+
+        compactIdentifiers = false;
+        AdvancedBan.get().runAsyncTask(this::encodeIdentifiers);
+
+        if (useMySQL && configuration.getMirror().isEnabled()) {
+            startMirror(configuration.getMirror());
+        }
+    }
+
+    private void startMirror(MySQLConfiguration.Mirror settings) {
+        try {
+            mirror = new PunishmentMirror(settings.getReconcileInterval() * 1000);
+        } catch (SQLException ex) {
+            logger.warn("Could not create the punishment mirror, punishments are read from MySQL");
+            logger.logException(ex);
+            return;
+        }
+        AdvancedBan.get().runAsyncTask(() -> syncMirror(false));
+        if (!mirrorScheduled) {
+            mirrorScheduled = true;
+            long interval = Math.max(1, settings.getSyncInterval() / 50);
+            AdvancedBan.get().scheduleRepeatingAsyncTask(() -> syncMirror(false), interval, interval);
+        }
+    }
+
+    /**
+     * Replaces the mirror, which is otherwise only started for MySQL.
+     */
+    void setMirror(PunishmentMirror mirror) {
+        this.mirror = mirror;
+    }
+
+    /**
+     * Copies the punishments other servers have added to the mirror, or compares the whole mirror to MySQL.
+     *
+     * @param reconcile whether to compare the whole mirror right away, e.g. after changes may have been missed
+     */
+    public void syncMirror(boolean reconcile) {
+        PunishmentMirror mirror = this.mirror;
+        if (mirror != null) {
+            mirror.sync(reconcile);
+        }
+    }
+
+    /**
+     * Copies a punishment another server has changed to the mirror.
+     */
+    public void refreshMirror(int id) {
+        PunishmentMirror mirror = this.mirror;
+        if (mirror != null) {
+            mirror.refresh(id);
+        }
+    }
+
+    /**
+     * Fills the binary identifier columns of rows written before they existed, a chunk per transaction.
+     * Lookups only switch to these columns once every row has been encoded.
+     */
+    private void encodeIdentifiers() {
+        if (encodeIdentifiers(SQLQuery.SELECT_UNENCODED_PUNISHMENTS, SQLQuery.UPDATE_PUNISHMENT_IDENTIFIER)
+                && encodeIdentifiers(SQLQuery.SELECT_UNENCODED_PUNISHMENTS_HISTORY, SQLQuery.UPDATE_PUNISHMENT_HISTORY_IDENTIFIER)) {
+            compactIdentifiers = AdvancedBan.get().getConfiguration().isCompactIdentifiers();
+        }
+    }
+
+    private boolean encodeIdentifiers(SQLQuery select, SQLQuery update) {
+        while (true) {
+            List<Object[]> rows = new ArrayList<>();
+            boolean selected = stream(select, rs -> {
+                String id = rs.getString("uuid");
+                Object identifier = id == null ? null : IdentifierCodec.parse(id);
+                return new Object[]{IdentifierCodec.encode(identifier), IdentifierCodec.getKind(identifier), rs.getInt("id")};
+            }, rows::add, ENCODE_CHUNK_SIZE);
+            if (!selected) {
+                return false;
+            }
+            if (rows.isEmpty()) {
+                return true;
+            }
+
+            logger.debug("Encoding " + rows.size() + " punishment identifiers for " + update);
+            if (!transaction(connection -> executeBatch(connection, update, rows)).isPresent()) {
+                return false;
+            }
+        }
+    }
+
+    private void migrateSchema() {
+        int version = queryFirst(SQLQuery.SELECT_SCHEMA_VERSION, rs -> rs.getInt(1)).orElse(0);
+        for (SchemaMigration migration : SchemaMigration.values()) {
+            if (migration.getVersion() <= version) {
+                continue;
+            }
+
+            logger.info("Migrating database schema to version " + migration.getVersion() + " (" + migration.name() + ")");
+            // MySQL commits every schema change on its own, so a migration that failed halfway can not be rolled back.
+            // Its statements are run one by one instead and the ones that already took effect are skipped on the next start.
+            boolean applied;
+            try (PooledConnection connection = pool.borrow();
+                 Statement statement = connection.getConnection().createStatement()) {
+                for (SQLQuery query : migration.getQueries()) {
+                    String sql = getQuery(query);
+                    if (sql != null && !isApplied(connection.getConnection(), query)) {
+                        statement.execute(sql);
+                    }
+                }
+                applied = executeUpdate(connection, SQLQuery.INSERT_SCHEMA_VERSION, migration.getVersion(), System.currentTimeMillis()) == 1;
+            } catch (SQLException ex) {
+                logger.logException(ex);
+                applied = false;
+            }
+
+            if (!applied) {
+                logger.warn("Failed to migrate the database schema to version " + migration.getVersion() + ", it will be retried on the next start");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the column or index added by the schema change already exists.
+     * Other statements of migrations can be repeated safely and are never reported as applied.
+     */
+    private static boolean isApplied(Connection connection, SQLQuery query) throws SQLException {
+        // The HSQLDB statements carry the same names without quoting
+        String sql = query.getHsqldb() != null ? query.getHsqldb() : query.getMysql().replace("`", "");
+        Matcher column = ADD_COLUMN.matcher(sql);
+        Matcher index = CREATE_INDEX.matcher(sql);
+        boolean addsColumn = column.lookingAt();
+        if (!addsColumn && !index.lookingAt()) {
+            return false;
+        }
+        String table = addsColumn ? column.group(1) : index.group(2);
+        String name = addsColumn ? column.group(2) : index.group(1);
+
+        DatabaseMetaData meta = connection.getMetaData();
+        // HSQLDB keeps unquoted names in upper case
+        for (String tableName : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = addsColumn
+                    ? meta.getColumns(connection.getCatalog(), null, tableName, null)
+                    : meta.getIndexInfo(connection.getCatalog(), null, tableName, false, true)) {
+                while (rs.next()) {
+                    if (name.equalsIgnoreCase(rs.getString(addsColumn ? "COLUMN_NAME" : "INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
     }
 
     public void onDisable() {
+        if (mirror != null) {
+            mirror.close();
+            mirror = null;
+        }
+        if (pool == null) {
+            return;
+        }
         if (!useMySQL) {
-            try (PreparedStatement statement = connection.prepareStatement("SHUTDOWN")) {
+            try (PooledConnection connection = pool.borrow();
+                 PreparedStatement statement = connection.getConnection().prepareStatement("SHUTDOWN")) {
                 statement.execute();
             } catch (SQLException ex) {
                 logger.warn("An unexpected error has occurred turning off the database");
                 logger.logException(ex);
             }
         }
-        try {
-            connection.close();
-        } catch (SQLException e) {
-            logger.warn(
-                    "Unable to close database connection\n" +
-                            "Check logs for more info");
-            logger.logException(e);
-        }
+        pool.close();
     }
 
     private void connectMySQLServer() {
+        String url = "jdbc:mysql://" + configuration.getAddress() + ":" +
+                configuration.getPort() + "/" + configuration.getDatabaseName() +
+                "?verifyServerCertificate=false&useSSL=false&autoReconnect=true&useServerPrepStmts=true&useUnicode=true&characterEncoding=utf8" +
+                (configuration.getFetchSize() > 0 ? "&useCursorFetch=true" : "");
         try {
-            connection = DriverManager.getConnection("jdbc:mysql://" + configuration.getAddress() + ":" +
-                            configuration.getPort() + "/" + configuration.getDatabaseName() +
-                            "?verifyServerCertificate=false&useSSL=false&autoReconnect=true&useUnicode=true&characterEncoding=utf8",
-                    configuration.getUsername(), configuration.getPassword());
+            pool = new ConnectionPool(() -> DriverManager.getConnection(url, configuration.getUsername(), configuration.getPassword()),
+                    configuration.getPool());
         } catch (SQLException exc) {
             logger.warn("Could not connect to MySQL-Server!");
             failedMySQL = true;
@@ -85,55 +271,310 @@ public class DatabaseManager {
     }
 
     public void executeStatement(SQLQuery sql, Object... parameters) {
-        executeStatement(sql, false, parameters);
+        String query = getQuery(sql, parameters);
+        try (PooledConnection connection = pool.borrow()) {
+            try {
+                PreparedStatement statement = connection.prepare(sql, query);
+                setParameters(sql, statement, parameters);
+                statement.execute();
+                replay(connection, sql, 0, parameters);
+            } catch (SQLException ex) {
+                connection.invalidate(sql);
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            logStatementException(query, ex);
+        }
     }
 
-    public ResultSet executeResultStatement(SQLQuery sql, Object... parameters) {
-        return executeStatement(sql, true, parameters);
+    /**
+     * Runs the statement as part of a {@link #transaction(Transaction)} and returns the amount of affected rows.
+     */
+    public int executeUpdate(PooledConnection connection, SQLQuery sql, Object... parameters) throws SQLException {
+        try {
+            PreparedStatement statement = connection.prepare(sql, getQuery(sql, parameters));
+            setParameters(sql, statement, parameters);
+            int updated = statement.executeUpdate();
+            replay(connection, sql, 0, parameters);
+            return updated;
+        } catch (SQLException ex) {
+            connection.invalidate(sql);
+            throw ex;
+        }
     }
 
-    private ResultSet executeStatement(SQLQuery sql, boolean result, Object... parameters) {
-        return executeStatement(useMySQL ? sql.getMysql() : sql.getHsqldb(), result, parameters);
+    /**
+     * Runs the statement once per parameter set in a single batch as part of a {@link #transaction(Transaction)}.
+     *
+     * @return the amount of affected rows per parameter set
+     */
+    public int[] executeBatch(PooledConnection connection, SQLQuery sql, List<Object[]> parameters) throws SQLException {
+        try {
+            PreparedStatement statement = connection.prepare(sql, getQuery(sql));
+            for (Object[] parameterSet : parameters) {
+                setParameters(sql, statement, parameterSet);
+                statement.addBatch();
+            }
+            int[] updated = statement.executeBatch();
+            for (Object[] parameterSet : parameters) {
+                replay(connection, sql, 0, parameterSet);
+            }
+            return updated;
+        } catch (SQLException ex) {
+            connection.invalidate(sql);
+            throw ex;
+        }
     }
 
-    public ResultSet executeStatement(String sql, boolean result, Object... parameters) {
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            for (int i = 0; i < parameters.length; i++) {
-                Object param = parameters[i];
-                if (param instanceof Integer) {
-                    statement.setInt(i + 1, (Integer) param);
-                } else if (param instanceof String) {
-                    statement.setString(i + 1, (String) param);
-                } else if (param instanceof UUID) {
-                    statement.setString(i + 1, param.toString());
-                } else if (param instanceof Long) {
-                    statement.setLong(i + 1, (Long) param);
-                } else {
-                    statement.setObject(i + 1, param);
+    /**
+     * Runs the statement as part of a {@link #transaction(Transaction)} and returns the generated id.
+     */
+    public int executeInsert(PooledConnection connection, SQLQuery sql, Object... parameters) throws SQLException {
+        try {
+            PreparedStatement statement = connection.prepare(sql, getQuery(sql, parameters));
+            setParameters(sql, statement, parameters);
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("No id has been generated for " + sql);
                 }
+                int id = keys.getInt(1);
+                replay(connection, sql, id, parameters);
+                return id;
             }
+        } catch (SQLException ex) {
+            connection.invalidate(sql);
+            throw ex;
+        }
+    }
 
-            if (result) {
-                return statement.executeQuery();
-            } else {
-                statement.execute();
+    /**
+     * Runs all statements of the transaction on one connection and commits them together.
+     * If anything fails the whole transaction is rolled back.
+     *
+     * @return the result of the transaction or empty if it has been rolled back
+     */
+    public <T> Optional<T> transaction(Transaction<T> transaction) {
+        try (PooledConnection connection = pool.borrow()) {
+            Connection raw = connection.getConnection();
+            raw.setAutoCommit(false);
+            List<Runnable> replays = new ArrayList<>();
+            if (mirror != null) {
+                mirrorPending.put(connection, replays);
+            }
+            try {
+                T result = transaction.run(connection);
+                raw.commit();
+                mirrorPending.remove(connection);
+                replays.forEach(Runnable::run);
+                return Optional.ofNullable(result);
+            } catch (SQLException | RuntimeException ex) {
+                raw.rollback();
+                throw ex;
+            } finally {
+                mirrorPending.remove(connection);
+                raw.setAutoCommit(true);
             }
-            return null;
         } catch (SQLException ex) {
-            logger.warn(
-                    "An unexpected error has occurred executing an Statement in the database\n"
-                            + "Please check the plugins/AdvancedBan/logs/latest.log file and report this\n"
-                    + "error in: https://github.com/DevLeoko/AdvancedBan/issues"
-            );
-            logger.debug("Query: \n" + sql);
+            logger.warn("An unexpected error has occurred executing a transaction in the database, it has been rolled back");
             logger.logException(ex);
-            return null;
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Runs the query and maps every row of the result.
+     *
+     * @return the mapped rows or an empty list if the query failed
+     */
+    public <T> List<T> query(SQLQuery sql, RowMapper<T> mapper, Object... parameters) {
+        List<T> result = new ArrayList<>();
+        stream(sql, mapper, result::add, parameters);
+        return result;
+    }
+
+    public <T> Optional<T> queryFirst(SQLQuery sql, RowMapper<T> mapper, Object... parameters) {
+        List<T> result = new ArrayList<>(1);
+        streamRows(sql, mapper, result::add, 1, parameters);
+        return result.isEmpty() ? Optional.empty() : Optional.ofNullable(result.get(0));
+    }
+
+    /**
+     * Runs a query selecting a single number like COUNT(*).
+     *
+     * @return the number or 0 if the query failed
+     */
+    public int count(SQLQuery sql, Object... parameters) {
+        return queryFirst(sql, rs -> rs.getInt(1), parameters).orElse(0);
+    }
+
+    /**
+     * Runs the query and hands every mapped row to the consumer while the result is being read,
+     * so large results never have to be held in memory at once.
+     * The consumer is called while a pooled connection is held and should therefore not block.
+     *
+     * @return false if the query failed
+     */
+    public <T> boolean stream(SQLQuery sql, RowMapper<T> mapper, Consumer<? super T> consumer, Object... parameters) {
+        return streamRows(sql, mapper, consumer, 0, parameters);
+    }
+
+    private <T> boolean streamRows(SQLQuery sql, RowMapper<T> mapper, Consumer<? super T> consumer, int maxRows, Object... parameters) {
+        PunishmentMirror mirror = this.mirror;
+        if (mirror != null && mirror.serves(sql) && mirror.stream(sql, mapper, consumer, maxRows, parameters)) {
+            return true;
+        }
+        String query = getQuery(sql, parameters);
+        boolean consumed = false;
+        try (PooledConnection connection = pool.borrow()) {
+            try {
+                PreparedStatement statement = connection.prepare(sql, query);
+                setParameters(sql, statement, parameters);
+                statement.setMaxRows(maxRows);
+                statement.setFetchSize(maxRows == 0 ? fetchSize : maxRows);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumed = true;
+                        consumer.accept(mapper.map(resultSet));
+                    }
+                }
+                return true;
+            } catch (SQLException ex) {
+                connection.invalidate(sql);
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            // Rows already passed on can not be taken back, so the mirror can only step in before the first one
+            if (!consumed && mirror != null && mirror.backs(sql) && mirror.stream(sql, mapper, consumer, maxRows, parameters)) {
+                logger.debug("Read " + sql + " from the punishment mirror as MySQL failed: " + ex.getMessage());
+                return true;
+            }
+            logStatementException(query, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Runs the query on MySQL even if the mirror would serve it, failures are only logged for debugging.
+     */
+    <T> boolean streamFromMySQL(SQLQuery sql, RowMapper<T> mapper, Consumer<? super T> consumer, Object... parameters) {
+        try (PooledConnection connection = pool.borrow()) {
+            try {
+                PreparedStatement statement = connection.prepare(sql, getQuery(sql, parameters));
+                setParameters(sql, statement, parameters);
+                statement.setFetchSize(fetchSize);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(mapper.map(resultSet));
+                    }
+                }
+                return true;
+            } catch (SQLException ex) {
+                connection.invalidate(sql);
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            logger.debug("Failed to read " + sql + " from MySQL for the punishment mirror: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private void replay(PooledConnection connection, SQLQuery sql, int id, Object... parameters) {
+        PunishmentMirror mirror = this.mirror;
+        if (mirror == null || !mirror.replays(sql)) {
+            return;
+        }
+        List<Runnable> pending = mirrorPending.get(connection);
+        if (pending != null) {
+            pending.add(() -> mirror.replay(sql, id, parameters));
+        } else {
+            mirror.replay(sql, id, parameters);
+        }
+    }
+
+    private String getQuery(SQLQuery sql, Object... parameters) {
+        if (isCompact(sql, parameters)) {
+            return useMySQL ? sql.getCompactMysql() : sql.getCompactHsqldb();
+        }
+        return useMySQL ? sql.getMysql() : sql.getHsqldb();
+    }
+
+    private boolean isCompact(SQLQuery sql, Object... parameters) {
+        if (!compactIdentifiers || sql.getCompactMysql() == null) {
+            return false;
+        }
+        // Subnets have no binary form, they are only found by the uuid column
+        for (Object param : parameters) {
+            if (param instanceof Subnet) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private void setParameters(SQLQuery sql, PreparedStatement statement, Object... parameters) throws SQLException {
+        setParameters(statement, isCompact(sql, parameters), parameters);
+    }
+
+    static void setParameters(PreparedStatement statement, boolean compact, Object... parameters) throws SQLException {
+        if (compact) {
+            parameters = withBinaryIdentifiers(parameters);
+        }
+        for (int i = 0; i < parameters.length; i++) {
+            Object param = parameters[i];
+            if (param instanceof Integer) {
+                statement.setInt(i + 1, (Integer) param);
+            } else if (param instanceof String) {
+                statement.setString(i + 1, (String) param);
+            } else if (param instanceof UUID) {
+                statement.setString(i + 1, param.toString());
+            } else if (param instanceof InetAddress) {
+                statement.setString(i + 1, ((InetAddress) param).getHostAddress());
+            } else if (param instanceof Subnet) {
+                statement.setString(i + 1, param.toString());
+            } else if (param instanceof Long) {
+                statement.setLong(i + 1, (Long) param);
+            } else if (param instanceof byte[]) {
+                statement.setBytes(i + 1, (byte[]) param);
+            } else {
+                statement.setObject(i + 1, param);
+            }
+        }
+    }
+
+    /**
+     * Puts the binary form of the leading identifiers in front of them, as the compact variant of a query takes both.
+     */
+    private static Object[] withBinaryIdentifiers(Object[] parameters) {
+        int identifiers = 0;
+        while (identifiers < parameters.length
+                && (parameters[identifiers] instanceof UUID || parameters[identifiers] instanceof InetAddress)) {
+            identifiers++;
+        }
+        Object[] expanded = new Object[identifiers + parameters.length];
+        for (int i = 0; i < identifiers; i++) {
+            expanded[i] = IdentifierCodec.encode(parameters[i]);
+        }
+        System.arraycopy(parameters, 0, expanded, identifiers, parameters.length);
+        return expanded;
+    }
+
+    private void logStatementException(String sql, SQLException ex) {
+        logger.warn(
+                "An unexpected error has occurred executing an Statement in the database\n"
+                        + "Please check the plugins/AdvancedBan/logs/latest.log file and report this\n"
+                + "error in: https://github.com/DevLeoko/AdvancedBan/issues"
+        );
+        logger.debug("Query: \n" + sql);
+        logger.logException(ex);
     }
 
     public boolean isConnectionValid(int timeout) {
-        try {
-            return connection.isValid(timeout);
+        if (pool == null) {
+            return false;
+        }
+        try (PooledConnection connection = pool.borrow()) {
+            return connection.getConnection().isValid(timeout);
         } catch (SQLException ex) {
             logger.warn("An unexpected error has occurred with the database.");
             logger.logException(ex);
@@ -141,6 +582,13 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * @return the maximum amount of connections that can be used at the same time
+     */
+    public int getMaxConnections() {
+        return pool == null ? 1 : pool.getMaxSize();
+    }
+
     public boolean isFailedMySQL() {
         return failedMySQL;
     }
@@ -148,4 +596,9 @@ public class DatabaseManager {
     public boolean isUseMySQL() {
         return useMySQL;
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    public interface Transaction<T> {
+        T run(PooledConnection connection) throws SQLException;
+    }
+}
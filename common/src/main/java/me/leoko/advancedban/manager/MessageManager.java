@@ -17,7 +17,7 @@ public class MessageManager {
         for (int i = 0; i < parameters.length; i += 2) {
             if(parameters[i + 1] == null)
                 parameters[i + 1] = "";
-            str = str.replaceAll("%" + parameters[i].toString() + '%', parameters[i + 1].toString());
+            str = str.replace("%" + parameters[i].toString() + '%', parameters[i + 1].toString());
         }
         return str;
     }
@@ -0,0 +1,337 @@
+package me.leoko.advancedban.manager;
+
+import me.leoko.advancedban.AdvancedBanLogger;
+import me.leoko.advancedban.configuration.MySQLConfiguration;
+import me.leoko.advancedban.utils.ConnectionPool;
+import me.leoko.advancedban.utils.PooledConnection;
+import me.leoko.advancedban.utils.RowMapper;
+import me.leoko.advancedban.utils.SQLQuery;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A copy of the Punishments table of the MySQL database in an in-memory HSQLDB database.
+ * Listings and counts are looked up in the copy. Joining players are checked against MySQL as the copy
+ * may lag behind, it is only used for them while MySQL fails so they can still join during an outage.
+ * Writes go to MySQL first and are replayed on the copy once committed.
+ * <p>
+ * Punishments of other servers are copied by their increasing ids, the same way the {@link SQLQuery#SELECT_PUNISHMENT_CHANGES}
+ * are read, or right away when they are announced through the change log or the peers. Everything else,
+ * like punishments removed by other servers, is picked up by comparing the whole table every now and then.
+ */
+class PunishmentMirror {
+    private static final String URL = "jdbc:hsqldb:mem:advancedban-mirror";
+    private static final int POLL_LIMIT = 500;
+    static final long GAP_TIMEOUT = 10_000;
+    // The Punishments table as it is after all migrations
+    private static final List<SQLQuery> SCHEMA = Arrays.asList(SQLQuery.CREATE_TABLE_PUNISHMENT, SQLQuery.WIDEN_UUID_PUNISHMENT,
+            SQLQuery.ADD_IDENTIFIER_PUNISHMENT, SQLQuery.ADD_IDENTIFIER_KIND_PUNISHMENT, SQLQuery.INDEX_PUNISHMENT_UUID,
+            SQLQuery.INDEX_PUNISHMENT_START, SQLQuery.INDEX_PUNISHMENT_END, SQLQuery.INDEX_PUNISHMENT_IDENTIFIER);
+    // Queries only reading the Punishments table that do not need the latest state of MySQL
+    private static final Set<SQLQuery> SERVED = EnumSet.of(SQLQuery.SELECT_EXPIRED_PUNISHMENTS, SQLQuery.COUNT_USER_WARNS,
+            SQLQuery.SELECT_USER_WARNS_PAGE, SQLQuery.SELECT_USER_WARNS_PAGE_AFTER, SQLQuery.COUNT_ACTIVE_PUNISHMENTS,
+            SQLQuery.SELECT_ACTIVE_PUNISHMENTS_PAGE, SQLQuery.SELECT_ACTIVE_PUNISHMENTS_PAGE_AFTER);
+    // Lookups enforcing punishments, only answered by the copy while MySQL fails
+    private static final Set<SQLQuery> BACKED = EnumSet.of(SQLQuery.SELECT_USER_PUNISHMENTS, SQLQuery.SELECT_USER_PUNISHMENTS_BATCH,
+            SQLQuery.SELECT_ACTIVE_BANS);
+    private static final Set<SQLQuery> REPLAYED = EnumSet.of(SQLQuery.INSERT_PUNISHMENT, SQLQuery.DELETE_PUNISHMENT,
+            SQLQuery.UPDATE_PUNISHMENT_REASON, SQLQuery.UPDATE_PUNISHMENT_IDENTIFIER);
+
+    private final AdvancedBanLogger logger = AdvancedBanLogger.getInstance();
+    private final ConnectionPool pool;
+    private final long reconcileInterval;
+    private final LongSupplier clock;
+    // Set once the whole table has been copied, until then everything is read from MySQL
+    private volatile boolean ready = false;
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    private long lastReconcile = 0;
+    // All rows up to this id have been copied
+    private int lastSeen = 0;
+    // Rows after a gap that have been copied already
+    private final Set<Integer> readAhead = new HashSet<>();
+    private long gapSince = -1;
+    // Removed punishments by the time of their removal, so a row read from MySQL just before does not bring them back
+    private final Map<Integer, Long> removed = new ConcurrentHashMap<>();
+
+    /**
+     * @param reconcileInterval milliseconds between comparing the whole table
+     */
+    PunishmentMirror(long reconcileInterval) throws SQLException {
+        this(reconcileInterval, System::currentTimeMillis);
+    }
+
+    PunishmentMirror(long reconcileInterval, LongSupplier clock) throws SQLException {
+        this.reconcileInterval = reconcileInterval;
+        this.clock = clock;
+        try {
+            Class.forName("org.hsqldb.jdbc.JDBCDriver");
+        } catch (ClassNotFoundException ex) {
+            throw new SQLException("HSQLDB JDBC driver not found", ex);
+        }
+        pool = new ConnectionPool(() -> DriverManager.getConnection(URL, "SA", ""), MySQLConfiguration.Pool.embedded());
+        try (PooledConnection connection = pool.borrow();
+             Statement statement = connection.getConnection().createStatement()) {
+            statement.execute("DROP TABLE Punishments IF EXISTS");
+            for (SQLQuery query : SCHEMA) {
+                statement.execute(query.getHsqldb());
+            }
+        }
+    }
+
+    boolean serves(SQLQuery sql) {
+        return ready && SERVED.contains(sql);
+    }
+
+    boolean backs(SQLQuery sql) {
+        return ready && BACKED.contains(sql);
+    }
+
+    boolean replays(SQLQuery sql) {
+        return REPLAYED.contains(sql);
+    }
+
+    /**
+     * @return false if the query failed and has to be run on MySQL instead
+     */
+    <T> boolean stream(SQLQuery sql, RowMapper<T> mapper, Consumer<? super T> consumer, int maxRows, Object... parameters) {
+        try (PooledConnection connection = pool.borrow()) {
+            try {
+                PreparedStatement statement = connection.prepare(sql, sql.getHsqldb());
+                DatabaseManager.setParameters(statement, false, parameters);
+                statement.setMaxRows(maxRows);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(mapper.map(resultSet));
+                    }
+                }
+                return true;
+            } catch (SQLException ex) {
+                connection.invalidate(sql);
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            logger.debug("Failed to read " + sql + " from the punishment mirror: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Applies a statement that has been committed in MySQL.
+     *
+     * @param id the generated id for inserts
+     */
+    void replay(SQLQuery sql, int id, Object... parameters) {
+        if (sql == SQLQuery.INSERT_PUNISHMENT) {
+            Object[] row = new Object[parameters.length + 1];
+            row[0] = id;
+            System.arraycopy(parameters, 0, row, 1, parameters.length);
+            apply(Collections.emptyList(), Collections.singletonList(row));
+        } else if (sql == SQLQuery.DELETE_PUNISHMENT) {
+            apply(Collections.singletonList((Integer) parameters[0]), Collections.emptyList());
+        } else {
+            try (PooledConnection connection = pool.borrow()) {
+                PreparedStatement statement = connection.prepare(sql, sql.getHsqldb());
+                DatabaseManager.setParameters(statement, false, parameters);
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                fail(ex);
+            }
+        }
+    }
+
+    /**
+     * Copies the punishment as it is in MySQL now, e.g. after another server changed it.
+     */
+    void refresh(int id) {
+        List<Object[]> rows = new ArrayList<>(1);
+        if (DatabaseManager.getInstance().streamFromMySQL(SQLQuery.SELECT_PUNISHMENT_BY_ID, PunishmentMirror::readRow, rows::add, id)) {
+            apply(rows.isEmpty() ? Collections.singletonList(id) : Collections.emptyList(), rows);
+        }
+    }
+
+    /**
+     * Copies the punishments added since the last sync or compares the whole table if it is time to.
+     * Does nothing if a sync is already running.
+     */
+    void sync(boolean reconcile) {
+        if (!syncing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (reconcile || !ready || clock.getAsLong() - lastReconcile >= reconcileInterval) {
+                reconcile();
+            } else {
+                poll();
+            }
+        } finally {
+            syncing.set(false);
+        }
+    }
+
+    private void poll() {
+        List<Object[]> rows = new ArrayList<>();
+        if (!DatabaseManager.getInstance().streamFromMySQL(SQLQuery.SELECT_PUNISHMENTS_AFTER, PunishmentMirror::readRow, rows::add, lastSeen, POLL_LIMIT)) {
+            return;
+        }
+
+        List<Object[]> fresh = new ArrayList<>(rows.size());
+        boolean gap = false;
+        int expected = lastSeen + 1;
+        for (Object[] row : rows) {
+            int id = (Integer) row[0];
+            gap |= id != expected;
+            expected = id + 1;
+            boolean unread;
+            if (gap) {
+                unread = readAhead.add(id);
+            } else {
+                lastSeen = id;
+                unread = !readAhead.remove(id);
+            }
+            if (unread) {
+                fresh.add(row);
+            }
+        }
+        apply(Collections.emptyList(), fresh);
+
+        // Ids are handed out before the inserts commit, but they are also missing for good once removed
+        if (!gap) {
+            gapSince = -1;
+        } else if (gapSince < 0) {
+            gapSince = clock.getAsLong();
+        } else if (clock.getAsLong() - gapSince > GAP_TIMEOUT) {
+            lastSeen = expected - 1;
+            readAhead.clear();
+            gapSince = -1;
+        }
+    }
+
+    private void reconcile() {
+        long started = clock.getAsLong();
+        Map<Integer, Object[]> copied = new HashMap<>();
+        if (!stream(SQLQuery.SELECT_ALL_PUNISHMENTS, PunishmentMirror::readRow, row -> copied.put((Integer) row[0], row), 0)) {
+            return;
+        }
+
+        List<Object[]> changed = new ArrayList<>();
+        int[] last = {0};
+        boolean read = DatabaseManager.getInstance().streamFromMySQL(SQLQuery.SELECT_ALL_PUNISHMENTS, PunishmentMirror::readRow, row -> {
+            int id = (Integer) row[0];
+            last[0] = Math.max(last[0], id);
+            // Every column is compared, as other servers may change any of them
+            if (!Arrays.deepEquals(copied.remove(id), row)) {
+                changed.add(row);
+            }
+        });
+        if (!read) {
+            return;
+        }
+        // Whatever is left has been removed from MySQL
+        apply(new ArrayList<>(copied.keySet()), changed);
+
+        lastSeen = last[0];
+        readAhead.clear();
+        gapSince = -1;
+        lastReconcile = started;
+        removed.values().removeIf(time -> time < started);
+        if (!ready) {
+            logger.debug("Copied " + changed.size() + " punishments to the mirror");
+            ready = true;
+        }
+    }
+
+    /**
+     * Removes and (re)inserts the rows in one transaction, skipping rows that have been removed in the meantime.
+     */
+    private void apply(List<Integer> deleted, List<Object[]> rows) {
+        if (deleted.isEmpty() && rows.isEmpty()) {
+            return;
+        }
+        long now = clock.getAsLong();
+        for (Integer id : deleted) {
+            removed.put(id, now);
+        }
+        try (PooledConnection connection = pool.borrow()) {
+            Connection raw = connection.getConnection();
+            raw.setAutoCommit(false);
+            try {
+                PreparedStatement delete = connection.prepare(SQLQuery.DELETE_PUNISHMENT, SQLQuery.DELETE_PUNISHMENT.getHsqldb());
+                PreparedStatement insert = connection.prepare(SQLQuery.INSERT_PUNISHMENT_WITH_ID, SQLQuery.INSERT_PUNISHMENT_WITH_ID.getHsqldb());
+                for (Integer id : deleted) {
+                    delete.setInt(1, id);
+                    delete.addBatch();
+                }
+                int inserted = 0;
+                for (Object[] row : rows) {
+                    if (!removed.containsKey((Integer) row[0])) {
+                        delete.setInt(1, (Integer) row[0]);
+                        delete.addBatch();
+                        DatabaseManager.setParameters(insert, false, row);
+                        insert.addBatch();
+                        inserted++;
+                    }
+                }
+                // HSQLDB refuses to run empty batches
+                if (!deleted.isEmpty() || inserted > 0) {
+                    delete.executeBatch();
+                }
+                if (inserted > 0) {
+                    insert.executeBatch();
+                }
+                raw.commit();
+            } catch (SQLException ex) {
+                raw.rollback();
+                connection.invalidate(SQLQuery.DELETE_PUNISHMENT);
+                connection.invalidate(SQLQuery.INSERT_PUNISHMENT_WITH_ID);
+                throw ex;
+            } finally {
+                raw.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            fail(ex);
+        }
+    }
+
+    // The copy may be missing something now, MySQL is used until it has been compared again
+    private void fail(SQLException ex) {
+        logger.warn("Failed to update the punishment mirror, punishments are read from MySQL until it has been copied again");
+        logger.logException(ex);
+        ready = false;
+    }
+
+    void close() {
+        try (PooledConnection connection = pool.borrow();
+             Statement statement = connection.getConnection().createStatement()) {
+            statement.execute("SHUTDOWN");
+        } catch (SQLException ex) {
+            logger.debug("Failed to shut down the punishment mirror: " + ex.getMessage());
+        }
+        pool.close();
+    }
+
+    private static Object[] readRow(ResultSet rs) throws SQLException {
+        int kind = rs.getInt("identifierKind");
+        Integer identifierKind = rs.wasNull() ? null : kind;
+        return new Object[]{rs.getInt("id"), rs.getString("name"), rs.getString("uuid"), rs.getString("reason"),
+                rs.getString("operator"), rs.getString("punishmentType"), rs.getLong("start"), rs.getLong("end"),
+                rs.getString("calculation"), rs.getBytes("identifier"), identifierKind};
+    }
+}
@@ -3,7 +3,6 @@ package me.leoko.advancedban.manager;
 import lombok.experimental.UtilityClass;
 import me.leoko.advancedban.AdvancedBan;
 import me.leoko.advancedban.AdvancedBanLogger;
-import me.leoko.advancedban.utils.SQLQuery;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -27,9 +26,6 @@ public class UpdateManager {
     public boolean migrateFiles() {
         if (AdvancedBan.get().isUnitTesting()) return false;
 
-        DatabaseManager.getInstance().executeStatement(SQLQuery.FIX_TABLE_PUNISHMENT);
-        DatabaseManager.getInstance().executeStatement(SQLQuery.FIX_TABLE_PUNISHMENT_HISTORY);
-
         boolean checkUndoNotification = false;
         boolean checkMuteReason = false;
         boolean checkBanReason = false;
@@ -0,0 +1,104 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.AdvancedBanLogger;
+import me.leoko.advancedban.manager.DatabaseManager;
+import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.utils.RowMapper;
+import me.leoko.advancedban.utils.SQLQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * All current bans by their UUID or IP, so logins can be checked without querying the database.
+ * It is loaded on enable and then kept up to date with the bans added and removed on this server,
+ * and with the ones of other servers announced through the change log or the peers.
+ * When announcements of other servers may have been missed it is loaded again.
+ */
+class BanIndex {
+    private volatile Map<Object, Set<Punishment>> bans = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+    // Changes made while loading, applied to the loaded bans before they replace the current ones. Guarded by itself
+    private final List<Consumer<Map<Object, Set<Punishment>>>> changes = new ArrayList<>();
+    private boolean loading = false;
+
+    synchronized void load(RowMapper<Punishment> mapper) {
+        synchronized (changes) {
+            loading = true;
+        }
+        Map<Object, Set<Punishment>> loaded = new ConcurrentHashMap<>();
+        boolean success = DatabaseManager.getInstance().stream(SQLQuery.SELECT_ACTIVE_BANS, mapper,
+                punishment -> add(loaded, punishment), TimeManager.getTime());
+        synchronized (changes) {
+            loading = false;
+            if (success) {
+                // A change made while loading may or may not have been read, so it is applied again
+                changes.forEach(change -> change.accept(loaded));
+                bans = loaded;
+            }
+            changes.clear();
+        }
+        if (success) {
+            AdvancedBanLogger.getInstance().debug("Loaded " + loaded.size() + " banned identifiers into the ban index");
+            ready = true;
+        } else if (ready) {
+            AdvancedBanLogger.getInstance().warn("Not able to load the ban index again, bans of other servers may be missing");
+        } else {
+            AdvancedBanLogger.getInstance().warn("Not able to load the ban index, logins are checked in the database instead");
+        }
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    void add(Punishment punishment) {
+        if (punishment.getType().getBasic() == PunishmentType.BAN) {
+            change(current -> add(current, punishment));
+        }
+    }
+
+    void remove(Object identifier, int id) {
+        change(current -> drop(current, id, identifier));
+    }
+
+    private void change(Consumer<Map<Object, Set<Punishment>>> change) {
+        synchronized (changes) {
+            if (loading) {
+                changes.add(change);
+            }
+            change.accept(bans);
+        }
+    }
+
+    private static void add(Map<Object, Set<Punishment>> bans, Punishment punishment) {
+        bans.computeIfAbsent(punishment.getIdentifier(), key -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
+                .add(punishment);
+    }
+
+    private static void drop(Map<Object, Set<Punishment>> bans, int id, Object identifier) {
+        bans.computeIfPresent(identifier, (key, punishments) -> {
+            punishments.removeIf(punishment -> punishment.getId().isPresent() && punishment.getId().getAsInt() == id);
+            return punishments.isEmpty() ? null : punishments;
+        });
+    }
+
+    Optional<Punishment> getBan(Object identifier) {
+        Set<Punishment> punishments = bans.get(identifier);
+        if (punishments != null) {
+            long now = TimeManager.getTime();
+            for (Punishment punishment : punishments) {
+                if (!punishment.isExpired(now)) {
+                    return Optional.of(punishment);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
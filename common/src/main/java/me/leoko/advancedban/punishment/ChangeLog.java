@@ -0,0 +1,157 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.AdvancedBanLogger;
+import me.leoko.advancedban.manager.DatabaseManager;
+import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.utils.IdentifierCodec;
+import me.leoko.advancedban.utils.PooledConnection;
+import me.leoko.advancedban.utils.RowMapper;
+import me.leoko.advancedban.utils.SQLQuery;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Every change to the punishments in order, so servers sharing the database can apply the changes
+ * made by the others to the punishments they have loaded. Each server reads the changes after the
+ * last one it has seen.
+ * <p>
+ * Sequence numbers are handed out before the transactions commit, so a change can show up after
+ * later ones have been read already. Changes after such a gap are read again until the gap is
+ * filled or has been open for {@link #GAP_TIMEOUT} milliseconds, as a rolled back change never shows up.
+ */
+class ChangeLog {
+    private static final int POLL_LIMIT = 500;
+    static final long GAP_TIMEOUT = 10_000;
+
+    private final AdvancedBanLogger logger = AdvancedBanLogger.getInstance();
+    private final long keepTime;
+    private final LongSupplier clock;
+    // Changes made by this server, they do not have to be applied again
+    private final Set<Integer> own = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // All changes up to this one have been read, -1 if it is not known yet
+    private int lastSeen = -1;
+    // Changes after a gap that have been read already
+    private final Set<Integer> readAhead = new HashSet<>();
+    private long gapSince = -1;
+
+    ChangeLog(long keepTime) {
+        this(keepTime, System::currentTimeMillis);
+    }
+
+    ChangeLog(long keepTime, LongSupplier clock) {
+        this.keepTime = keepTime;
+        this.clock = clock;
+    }
+
+    /**
+     * Skips all changes made so far, as they are part of what is loaded from the database afterwards.
+     */
+    synchronized void start() {
+        DatabaseManager.getInstance().queryFirst(SQLQuery.SELECT_LAST_PUNISHMENT_CHANGE, rs -> rs.getInt(1))
+                .ifPresent(seq -> lastSeen = seq);
+    }
+
+    /**
+     * Writes the change as part of the transaction that makes it.
+     */
+    void record(PooledConnection connection, Type type, int id, Object identifier) throws SQLException {
+        own.add(DatabaseManager.getInstance().executeInsert(connection, SQLQuery.INSERT_PUNISHMENT_CHANGE,
+                id, type.name(), identifier, TimeManager.getTime()));
+    }
+
+    /**
+     * @param mapper maps the changed punishment as it is in the database now
+     * @return the changes made by other servers since the last poll, in order
+     */
+    synchronized List<Change> poll(RowMapper<Punishment> mapper) {
+        if (lastSeen < 0) {
+            start();
+            return Collections.emptyList();
+        }
+
+        List<Change> changes = new ArrayList<>();
+        boolean read = DatabaseManager.getInstance().stream(SQLQuery.SELECT_PUNISHMENT_CHANGES, rs -> {
+            Object target = IdentifierCodec.parse(rs.getString("target"));
+            // The punishment is gone if it has been removed since
+            Punishment punishment = rs.getString("punishmentType") == null ? null : mapper.map(rs);
+            return new Change(rs.getInt("seq"), rs.getInt("punishment"), Type.valueOf(rs.getString("changeType")), target, punishment);
+        }, changes::add, lastSeen, POLL_LIMIT);
+        if (!read) {
+            return Collections.emptyList();
+        }
+
+        List<Change> fresh = new ArrayList<>(changes.size());
+        boolean gap = false;
+        int expected = lastSeen + 1;
+        for (Change change : changes) {
+            gap |= change.seq != expected;
+            expected = change.seq + 1;
+            boolean unread;
+            if (gap) {
+                unread = readAhead.add(change.seq);
+            } else {
+                lastSeen = change.seq;
+                unread = !readAhead.remove(change.seq);
+            }
+            if (unread && !own.remove(change.seq) && change.target != null) {
+                fresh.add(change);
+            }
+        }
+
+        if (!gap) {
+            gapSince = -1;
+        } else if (gapSince < 0) {
+            gapSince = clock.getAsLong();
+        } else if (clock.getAsLong() - gapSince > GAP_TIMEOUT) {
+            logger.debug("Skipping missing punishment changes after " + lastSeen);
+            lastSeen = expected - 1;
+            readAhead.clear();
+            own.removeIf(seq -> seq <= lastSeen);
+            gapSince = -1;
+        }
+        return fresh;
+    }
+
+    /**
+     * Deletes changes older than the keep time, every server should have read them by then.
+     * The latest change is always kept, as MySQL may start counting from the highest remaining
+     * sequence number again after a restart.
+     */
+    void prune() {
+        int before;
+        synchronized (this) {
+            before = lastSeen;
+        }
+        if (before > 0) {
+            DatabaseManager.getInstance().executeStatement(SQLQuery.DELETE_OLD_PUNISHMENT_CHANGES, TimeManager.getTime() - keepTime, before);
+        }
+    }
+
+    enum Type {
+        ADD, UPDATE, DELETE
+    }
+
+    static class Change {
+        private final int seq;
+        final int id;
+        final Type type;
+        final Object target;
+        // Null if the punishment does not exist anymore
+        final Punishment punishment;
+
+        private Change(int seq, int id, Type type, Object target, Punishment punishment) {
+            this.seq = seq;
+            this.id = id;
+            this.type = type;
+            this.target = target;
+            this.punishment = punishment;
+        }
+    }
+}
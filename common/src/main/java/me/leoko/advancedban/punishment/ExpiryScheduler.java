@@ -0,0 +1,92 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.manager.TimeManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the loaded temporary punishments ordered by their end, so expired ones can be
+ * taken out as soon as they end instead of being found by the next read.
+ */
+class ExpiryScheduler {
+    private final DelayQueue<Expiry> queue = new DelayQueue<>();
+    // The queued expiry of each punishment by its id. Cancelled ones stay queued until they are due
+    // and are picked up again if the punishment is scheduled once more, e.g. when its player rejoins
+    private final Map<Integer, Expiry> scheduled = new HashMap<>();
+
+    synchronized void schedule(Punishment punishment) {
+        if (!punishment.getType().isTemp() || !punishment.getId().isPresent()) {
+            return;
+        }
+        int id = punishment.getId().getAsInt();
+        Expiry expiry = scheduled.get(id);
+        if (expiry != null && expiry.end == punishment.getEnd()) {
+            expiry.punishment = punishment;
+            expiry.cancelled = false;
+            return;
+        }
+        if (expiry != null) {
+            expiry.cancelled = true;
+        }
+        expiry = new Expiry(punishment, System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(punishment.getEnd() - TimeManager.getTime()));
+        scheduled.put(id, expiry);
+        queue.add(expiry);
+    }
+
+    synchronized void cancel(Collection<Punishment> punishments) {
+        for (Punishment punishment : punishments) {
+            Expiry expiry = punishment.getId().isPresent() ? scheduled.get(punishment.getId().getAsInt()) : null;
+            if (expiry != null) {
+                expiry.cancelled = true;
+            }
+        }
+    }
+
+    /**
+     * @return all punishments that have ended since the last call
+     */
+    synchronized List<Punishment> pollExpired() {
+        List<Punishment> expired = new ArrayList<>();
+        Expiry expiry;
+        while ((expiry = queue.poll()) != null) {
+            scheduled.remove(expiry.punishment.getId().getAsInt(), expiry);
+            if (!expiry.cancelled) {
+                expired.add(expiry.punishment);
+            }
+        }
+        return expired;
+    }
+
+    private static class Expiry implements Delayed {
+        private Punishment punishment;
+        private boolean cancelled = false;
+        private final long end;
+        private final long deadline;
+
+        private Expiry(Punishment punishment, long deadline) {
+            this.punishment = punishment;
+            this.end = punishment.getEnd();
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return other instanceof Expiry
+                    ? Long.compare(deadline, ((Expiry) other).deadline)
+                    : Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.AdvancedBanLogger;
+import me.leoko.advancedban.manager.DatabaseManager;
+import me.leoko.advancedban.utils.SQLQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntSupplier;
+
+/**
+ * Queues history inserts and writes them in a single batch per flush.
+ * If the queue is full the entry is written right away, so nothing is dropped under load.
+ */
+class HistoryWriter {
+    private final AdvancedBanLogger logger = AdvancedBanLogger.getInstance();
+    private final BlockingQueue<Entry> queue;
+    // Entries taken from the queue that are not committed yet, still counted as pending
+    private List<Entry> writing = new ArrayList<>();
+
+    HistoryWriter(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    void add(Punishment punishment, Object[] columns) {
+        if (!queue.offer(new Entry(punishment, columns))) {
+            logger.debug("History write queue is full, writing entry directly");
+            DatabaseManager.getInstance().executeStatement(SQLQuery.INSERT_PUNISHMENT_HISTORY, columns);
+        }
+    }
+
+    /**
+     * Writes all queued entries in one transaction.
+     * Entries of a failed flush are kept and retried alone with the next one. No further entries are taken
+     * from the queue until they are written, so it fills up and new entries are written directly instead.
+     */
+    synchronized void flush() {
+        if (writing.isEmpty()) {
+            queue.drainTo(writing);
+        }
+        if (writing.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(writing.size());
+        for (Entry entry : writing) {
+            rows.add(entry.columns);
+        }
+        boolean written = DatabaseManager.getInstance().transaction(connection ->
+                DatabaseManager.getInstance().executeBatch(connection, SQLQuery.INSERT_PUNISHMENT_HISTORY, rows)).isPresent();
+        if (written) {
+            logger.debug("Wrote " + rows.size() + " queued history entries");
+            writing = new ArrayList<>();
+        } else {
+            logger.warn("Not able to save " + rows.size() + " history entries! They will be retried with the next flush.");
+        }
+    }
+
+    /**
+     * Counts the written entries together with the ones that have not been written yet.
+     * No flush can run in between, so no entry is counted twice or missed.
+     *
+     * @param written counts the entries in the database
+     */
+    synchronized int count(Object identifier, String calculation, IntSupplier written) {
+        int count = written.getAsInt();
+        for (Entry entry : writing) {
+            count += entry.matches(identifier, calculation) ? 1 : 0;
+        }
+        for (Entry entry : queue) {
+            count += entry.matches(identifier, calculation) ? 1 : 0;
+        }
+        return count;
+    }
+
+    private static class Entry {
+        private final Punishment punishment;
+        private final Object[] columns;
+
+        private Entry(Punishment punishment, Object[] columns) {
+            this.punishment = punishment;
+            this.columns = columns;
+        }
+
+        private boolean matches(Object identifier, String calculation) {
+            return punishment.getIdentifier().equals(identifier) && calculation.equalsIgnoreCase(punishment.getCalculation());
+        }
+    }
+}
@@ -15,5 +15,4 @@ public class InterimData {
     private final String name;
     private final InetAddress address;
     private final Set<Punishment> punishments;
-    private final Set<Punishment> history;
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package me.leoko.advancedban.punishment;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Rendered layouts of punishments by their id. Only the parts that change over time
+ * are left as placeholders, everything else is rendered once per punishment.
+ * Entries have to be invalidated when the reason changes and cleared when the layouts are reloaded.
+ */
+class LayoutCache {
+    private static final int MAX_SIZE = 1000;
+    // Least recently used first
+    private final Map<Integer, List<String>> layouts = new LinkedHashMap<>(16, 0.75f, true);
+    // Changed by every invalidation, so layouts rendered before it are not cached
+    private int version = 0;
+
+    List<String> get(int id, Supplier<List<String>> render) {
+        int version;
+        synchronized (this) {
+            List<String> layout = layouts.get(id);
+            if (layout != null) {
+                return layout;
+            }
+            version = this.version;
+        }
+        // Rendered outside of the lock, at worst it is rendered twice
+        List<String> layout = render.get();
+        synchronized (this) {
+            if (version != this.version) {
+                return layout;
+            }
+            layouts.put(id, layout);
+            if (layouts.size() > MAX_SIZE) {
+                layouts.remove(layouts.keySet().iterator().next());
+            }
+        }
+        return layout;
+    }
+
+    synchronized void invalidate(int id) {
+        version++;
+        layouts.remove(id);
+    }
+
+    synchronized void clear() {
+        version++;
+        layouts.clear();
+    }
+}
@@ -0,0 +1,29 @@
+package me.leoko.advancedban.punishment;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The current mute of an online player, kept by the {@link PunishmentManager} so chat and commands
+ * can be checked without looking up punishments. Players without a mute have no state at all.
+ */
+public class MuteState {
+    @Getter
+    private final Punishment punishment;
+
+    MuteState(Punishment punishment) {
+        this.punishment = punishment;
+    }
+
+    /**
+     * @return true if the mute has ended but has not been removed yet
+     */
+    public boolean isExpired() {
+        return punishment.isExpired();
+    }
+
+    public List<String> getLayout() {
+        return PunishmentManager.getInstance().getLayout(punishment);
+    }
+}
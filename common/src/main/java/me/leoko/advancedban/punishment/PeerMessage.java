@@ -0,0 +1,116 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.utils.IdentifierCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A change sent to the other servers through the peer channel. New punishments are sent as a whole,
+ * so they can be applied without the database. For anything else only the id is sent and
+ * the receivers read the punishment from the database again.
+ */
+class PeerMessage {
+    private static final byte ADDED = 0;
+    private static final byte INVALIDATED = 1;
+
+    final int id;
+    final Object target;
+    // Only set for new punishments
+    final Punishment punishment;
+
+    private PeerMessage(int id, Object target, Punishment punishment) {
+        this.id = id;
+        this.target = target;
+        this.punishment = punishment;
+    }
+
+    static byte[] added(Punishment punishment) {
+        return write(ADDED, punishment.getId().getAsInt(), punishment.getIdentifier(), punishment);
+    }
+
+    static byte[] invalidated(int id, Object target) {
+        return write(INVALIDATED, id, target, null);
+    }
+
+    private static byte[] write(byte type, int id, Object target, Punishment punishment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeInt(id);
+            byte[] encoded = IdentifierCodec.encode(target);
+            out.writeByte(IdentifierCodec.getKind(target));
+            if (encoded != null) {
+                out.write(encoded);
+            } else {
+                out.writeUTF(target.toString());
+            }
+            if (punishment != null) {
+                out.writeUTF(punishment.getType().name());
+                out.writeLong(punishment.getStart());
+                out.writeLong(punishment.getEnd());
+                writeNullable(out, punishment.getName());
+                writeNullable(out, punishment.getOperator());
+                writeNullable(out, punishment.getCalculation());
+                writeNullable(out, punishment.getReason().orElse(null));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException if the message is malformed
+     */
+    static PeerMessage read(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+        byte type = in.readByte();
+        int id = in.readInt();
+        int kind = in.readByte();
+        Object target;
+        if (kind == IdentifierCodec.KIND_UNKNOWN) {
+            target = IdentifierCodec.parse(in.readUTF());
+        } else {
+            byte[] encoded = new byte[16];
+            in.readFully(encoded);
+            target = IdentifierCodec.decode(kind, encoded);
+        }
+        if (target == null) {
+            throw new IOException("Invalid identifier");
+        }
+        if (type == INVALIDATED) {
+            return new PeerMessage(id, target, null);
+        } else if (type != ADDED) {
+            throw new IOException("Unknown message type " + type);
+        }
+
+        PunishmentType punishmentType;
+        try {
+            punishmentType = PunishmentType.valueOf(in.readUTF());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex);
+        }
+        long start = in.readLong();
+        long end = in.readLong();
+        Punishment punishment = new Punishment(target, readNullable(in), readNullable(in), readNullable(in), start, end, punishmentType);
+        punishment.setReason(readNullable(in));
+        punishment.setId(id);
+        return new PeerMessage(id, target, punishment);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -1,9 +1,11 @@
 package me.leoko.advancedban.punishment;
 
 import lombok.AccessLevel;
-import lombok.Data;
+import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.utils.Subnet;
 
 import javax.annotation.Nonnull;
 import java.net.InetAddress;
@@ -15,7 +17,8 @@ import java.util.UUID;
 /**
  * Created by Leoko @ dev.skamps.eu on 30.05.2016.
  */
-@Data
+@Getter
+@ToString
 public class Punishment {
     private final Object identifier;
     private final String name;
@@ -25,13 +28,17 @@ public class Punishment {
     private final long end;
     private final PunishmentType type;
 
+    @Setter
     private String reason;
     @Setter(value = AccessLevel.PACKAGE)
     private int id = -1;
+    // Entries of the history table have their own ids
+    @Setter(value = AccessLevel.PACKAGE)
+    private boolean history;
 
     public Punishment(@Nonnull Object identifier, String name, String operator, String calculation, long start, long end, @Nonnull PunishmentType type) {
-        if (!(identifier instanceof UUID || identifier instanceof InetAddress)) {
-            throw new IllegalArgumentException("identifier must be UUID or InetAddress");
+        if (!(identifier instanceof UUID || identifier instanceof InetAddress || identifier instanceof Subnet)) {
+            throw new IllegalArgumentException("identifier must be UUID, InetAddress or Subnet");
         }
         this.identifier = Objects.requireNonNull(identifier);
         this.name = name;
@@ -47,10 +54,39 @@ public class Punishment {
     }
 
     public boolean isExpired(){
-        return getType().isTemp() && getEnd() <= TimeManager.getTime();
+        return isExpired(TimeManager.getTime());
+    }
+
+    /**
+     * @param now the current time from {@link TimeManager#getTime()}, so it can be shared when checking many punishments
+     */
+    public boolean isExpired(long now) {
+        return getType().isTemp() && getEnd() <= now;
     }
 
     public OptionalInt getId() {
         return id < 0 ? OptionalInt.empty() : OptionalInt.of(id);
     }
+
+    /**
+     * Punishments are the same if they have the same id in the same table, so changing the reason keeps them in their sets.
+     * Punishments that have not been added yet are only equal to themselves.
+     * Their hash code changes once they are added, so they must not be put into hash based sets or maps before.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Punishment)) {
+            return false;
+        }
+        Punishment other = (Punishment) o;
+        return id >= 0 && id == other.id && history == other.history;
+    }
+
+    @Override
+    public int hashCode() {
+        return id >= 0 ? 31 * id + (history ? 1 : 0) : System.identityHashCode(this);
+    }
 }
@@ -0,0 +1,139 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.manager.TimeManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * Loaded punishments and history of a single identifier (UUID or IP).
+ * Keeps a bitmask of the basic types with current punishments, so lookups for a type
+ * the identifier does not have are answered without looking at any punishment.
+ */
+class PunishmentBucket {
+    private final Set<Punishment> punishments = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Loaded on first use, null until then. A list as history entries carry ids of the history table,
+    // which may be the same as the ones of current punishments added to it
+    private volatile List<Punishment> history = null;
+    // Set once the history turned out to be longer than the history limit, it is looked up in the database from then on
+    private boolean historyTooLarge = false;
+    private boolean historyLoading = false;
+    private int historyVersion = 0;
+    private int historyLimit = 0;
+    private volatile int types = 0;
+    // Amount of online players sharing this identifier, e.g. several accounts on one IP
+    private int references = 0;
+
+    Set<Punishment> getPunishments() {
+        return punishments;
+    }
+
+    /**
+     * @return the loaded history or null if it has not been loaded or is longer than the history limit
+     */
+    List<Punishment> getHistory() {
+        return history;
+    }
+
+    synchronized void addPunishment(Punishment punishment) {
+        punishments.add(punishment);
+        types |= mask(punishment.getType());
+    }
+
+    synchronized boolean removePunishments(Predicate<Punishment> filter) {
+        if (!punishments.removeIf(filter)) {
+            return false;
+        }
+        int types = 0;
+        for (Punishment remaining : punishments) {
+            types |= mask(remaining.getType());
+        }
+        this.types = types;
+        return true;
+    }
+
+    synchronized void addHistory(Punishment punishment) {
+        historyVersion++;
+        if (history == null) {
+            return;
+        }
+        if (historyLimit > 0 && history.size() >= historyLimit) {
+            // Lookups go to the database from now on, so the history is not kept any longer
+            history = null;
+            historyTooLarge = true;
+            return;
+        }
+        history.add(punishment);
+    }
+
+    /**
+     * @return the version to pass to {@link #finishHistoryLoad(int, List, int)}
+     * or -1 if the history is already loaded, being loaded or longer than the history limit
+     */
+    synchronized int startHistoryLoad() {
+        if (history != null || historyLoading || historyTooLarge) {
+            return -1;
+        }
+        historyLoading = true;
+        return historyVersion;
+    }
+
+    /**
+     * Keeps the loaded history unless something has been added while loading,
+     * as it cannot be told whether that is part of the loaded history already.
+     *
+     * @param loaded the history entries or null if loading failed
+     * @param limit  maximum amount of entries to keep or 0 for no limit, longer histories are not kept at all
+     */
+    synchronized void finishHistoryLoad(int version, List<Punishment> loaded, int limit) {
+        historyLoading = false;
+        if (loaded != null && version == historyVersion) {
+            historyLimit = limit;
+            if (limit > 0 && loaded.size() > limit) {
+                historyTooLarge = true;
+            } else {
+                history = new CopyOnWriteArrayList<>(loaded);
+            }
+        }
+    }
+
+    /**
+     * @param type basic type to look for or null for all types
+     */
+    List<Punishment> getCurrent(PunishmentType type) {
+        if (type != null && (types & mask(type)) == 0) {
+            return Collections.emptyList();
+        }
+        List<Punishment> current = new ArrayList<>(1);
+        long now = TimeManager.getTime();
+        for (Punishment punishment : punishments) {
+            if ((type == null || type == punishment.getType().getBasic()) && !punishment.isExpired(now)) {
+                current.add(punishment);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return true if this is the first online player using this identifier
+     */
+    synchronized boolean retain() {
+        return ++references == 1;
+    }
+
+    /**
+     * @return true if no online player uses this identifier anymore
+     */
+    synchronized boolean release() {
+        return --references <= 0;
+    }
+
+    private static int mask(PunishmentType type) {
+        return 1 << type.getBasic().ordinal();
+    }
+}
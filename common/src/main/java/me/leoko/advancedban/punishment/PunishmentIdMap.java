@@ -0,0 +1,111 @@
+package me.leoko.advancedban.punishment;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Loaded punishments by their id in an open addressing table of plain ints,
+ * so looking one up neither boxes the id nor hashes anything but the id itself.
+ */
+class PunishmentIdMap {
+    private static final int EMPTY = -1;
+
+    private int[] ids = newIds(16);
+    private Punishment[] punishments = new Punishment[16];
+    private int size = 0;
+
+    synchronized Punishment get(int id) {
+        int mask = ids.length - 1;
+        for (int slot = mix(id) & mask; ids[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (ids[slot] == id) {
+                return punishments[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the punishment already known by this id or null if the given one has been added
+     */
+    synchronized Punishment putIfAbsent(Punishment punishment) {
+        int id = punishment.getId().getAsInt();
+        int mask = ids.length - 1;
+        int slot = mix(id) & mask;
+        for (; ids[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (ids[slot] == id) {
+                return punishments[slot];
+            }
+        }
+        ids[slot] = id;
+        punishments[slot] = punishment;
+        if (++size * 2 > ids.length) {
+            resize(ids.length * 2);
+        }
+        return null;
+    }
+
+    synchronized void remove(int id) {
+        int mask = ids.length - 1;
+        int slot = mix(id) & mask;
+        while (ids[slot] != id) {
+            if (ids[slot] == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Moves the following entries of the run back, so lookups never stop at the removed slot
+        for (int next = (slot + 1) & mask; ids[next] != EMPTY; next = (next + 1) & mask) {
+            int home = mix(ids[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                ids[slot] = ids[next];
+                punishments[slot] = punishments[next];
+                slot = next;
+            }
+        }
+        ids[slot] = EMPTY;
+        punishments[slot] = null;
+        size--;
+    }
+
+    synchronized void removeAll(Collection<Punishment> removed) {
+        for (Punishment punishment : removed) {
+            if (punishment.getId().isPresent()) {
+                remove(punishment.getId().getAsInt());
+            }
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        int[] oldIds = ids;
+        Punishment[] oldPunishments = punishments;
+        ids = newIds(capacity);
+        punishments = new Punishment[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) {
+                int slot = mix(oldIds[i]) & mask;
+                while (ids[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = oldIds[i];
+                punishments[slot] = oldPunishments[i];
+            }
+        }
+    }
+
+    private static int[] newIds(int capacity) {
+        int[] ids = new int[capacity];
+        Arrays.fill(ids, EMPTY);
+        return ids;
+    }
+
+    // Ids are sequential, spreading them keeps the runs short
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,85 @@
+package me.leoko.advancedban.punishment;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Value;
+import me.leoko.advancedban.utils.SQLQuery;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lists of punishments that can be paged through in the database, newest first.
+ * Pages are either addressed by offset or, if the last entry of the previous page is known,
+ * by that entry's start and id so the database can seek to it directly.
+ * That position is handed out with the page number as a {@link Cursor} for the next page.
+ */
+@Getter
+@AllArgsConstructor
+public enum PunishmentListing {
+    ACTIVE(false, true,
+            SQLQuery.COUNT_ACTIVE_PUNISHMENTS,
+            SQLQuery.SELECT_ACTIVE_PUNISHMENTS_PAGE,
+            SQLQuery.SELECT_ACTIVE_PUNISHMENTS_PAGE_AFTER),
+    HISTORY(true, false,
+            SQLQuery.COUNT_USER_PUNISHMENTS_HISTORY,
+            SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY_PAGE,
+            SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY_PAGE_AFTER),
+    WARNS(true, true,
+            SQLQuery.COUNT_USER_WARNS,
+            SQLQuery.SELECT_USER_WARNS_PAGE,
+            SQLQuery.SELECT_USER_WARNS_PAGE_AFTER);
+
+    private final boolean targeted;
+    private final boolean current;
+    private final SQLQuery countQuery;
+    private final SQLQuery pageQuery;
+    private final SQLQuery pageAfterQuery;
+
+    /**
+     * The page number together with the start and id of the last entry of the page before it,
+     * written as "page:start:id" with the start in base 36 to keep it short.
+     */
+    @Value
+    public static class Cursor {
+        private static final Pattern PATTERN = Pattern.compile("([1-9][0-9]{0,8})(?::([0-9a-z]{1,13}):([0-9]{1,10}))?");
+
+        int page;
+        long start;
+        int id;
+
+        public static Cursor page(int page) {
+            return new Cursor(page, -1, -1);
+        }
+
+        public static Cursor after(int page, Punishment last) {
+            return new Cursor(page, last.getStart(), last.getId().orElse(Integer.MAX_VALUE));
+        }
+
+        /**
+         * @return the cursor or null if the text is not one, a plain page number has no position
+         */
+        public static Cursor parse(String text) {
+            Matcher matcher = PATTERN.matcher(text);
+            if (!matcher.matches()) {
+                return null;
+            }
+            try {
+                int page = Integer.parseInt(matcher.group(1));
+                return matcher.group(2) == null ? page(page)
+                        : new Cursor(page, Long.parseLong(matcher.group(2), 36), Integer.parseInt(matcher.group(3)));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        public boolean hasPosition() {
+            return id >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return hasPosition() ? page + ":" + Long.toString(start, 36) + ":" + id : String.valueOf(page);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.manager.DatabaseManager;
+import me.leoko.advancedban.utils.RowMapper;
+import me.leoko.advancedban.utils.SQLQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Loads the current punishments of a UUID or IP that is not cached as an online player.
+ * Concurrent loads of the same identifier share one query. Results are kept for {@link #RECONNECT_TIME},
+ * which covers players reconnecting quickly and several accounts on one IP, and optionally longer for
+ * staff checking the same offline players over and over. Joining players never get a result older than
+ * {@link #RECONNECT_TIME}, so bans issued on other servers are noticed.
+ * Every change to an identifier's punishments has to invalidate it.
+ * Histories are not cached, /history and /warns read only the shown page from the database.
+ */
+class PunishmentLoader {
+    static final long RECONNECT_TIME = 5000;
+
+    private final RowMapper<Punishment> mapper;
+    private final LongSupplier clock;
+    private final Map<Object, CompletableFuture<List<Punishment>>> loading = new ConcurrentHashMap<>();
+    // Least recently used first
+    private final Map<Object, LoadResult> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile int maxSize = 1000;
+    private volatile long cacheTime = 0;
+
+    PunishmentLoader(RowMapper<Punishment> mapper) {
+        this(mapper, System::currentTimeMillis);
+    }
+
+    PunishmentLoader(RowMapper<Punishment> mapper, LongSupplier clock) {
+        this.mapper = mapper;
+        this.clock = clock;
+    }
+
+    /**
+     * @param cacheTime milliseconds a result is kept for lookups of offline players, 0 to only keep it
+     *                  for {@link #RECONNECT_TIME}
+     */
+    synchronized void setLimits(int maxSize, long cacheTime) {
+        this.maxSize = maxSize;
+        this.cacheTime = cacheTime;
+        loaded.clear();
+    }
+
+    /**
+     * Loads the punishments of an offline player, e.g. for /check.
+     */
+    List<Punishment> load(Object identifier) {
+        return load(identifier, Math.max(cacheTime, RECONNECT_TIME));
+    }
+
+    /**
+     * Loads the punishments of a joining player, which must not miss recent bans.
+     */
+    List<Punishment> loadForLogin(Object identifier) {
+        return load(identifier, RECONNECT_TIME);
+    }
+
+    private List<Punishment> load(Object identifier, long maxAge) {
+        long now = clock.getAsLong();
+        List<Punishment> cached = getCached(identifier, now, maxAge);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        CompletableFuture<List<Punishment>> future = new CompletableFuture<>();
+        CompletableFuture<List<Punishment>> running = loading.putIfAbsent(identifier, future);
+        if (running != null) {
+            return running.join();
+        }
+
+        List<Punishment> punishments = new ArrayList<>();
+        boolean success = false;
+        try {
+            success = DatabaseManager.getInstance().stream(SQLQuery.SELECT_USER_PUNISHMENTS, mapper, punishments::add, identifier);
+        } finally {
+            List<Punishment> result = Collections.unmodifiableList(punishments);
+            finish(identifier, future, success ? result : null, now);
+            future.complete(result);
+        }
+        return future.join();
+    }
+
+    private synchronized List<Punishment> getCached(Object identifier, long now, long maxAge) {
+        LoadResult cached = loaded.get(identifier);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.loadedAt + Math.max(cacheTime, RECONNECT_TIME) <= now) {
+            loaded.remove(identifier);
+            return null;
+        }
+        return cached.loadedAt + maxAge > now ? cached.punishments : null;
+    }
+
+    private synchronized void finish(Object identifier, CompletableFuture<List<Punishment>> future, List<Punishment> result, long now) {
+        // Not cached if the identifier has been invalidated while loading, the result might be outdated
+        if (loading.remove(identifier, future) && result != null && maxSize > 0) {
+            long keepTime = Math.max(cacheTime, RECONNECT_TIME);
+            loaded.put(identifier, new LoadResult(result, now));
+            loaded.values().removeIf(expired -> expired.loadedAt + keepTime <= now);
+            while (loaded.size() > maxSize) {
+                loaded.remove(loaded.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Drops the cached and running loads of the identifier after its punishments changed.
+     */
+    synchronized void invalidate(Object identifier) {
+        loading.remove(identifier);
+        loaded.remove(identifier);
+    }
+
+    /**
+     * Drops all cached and running loads, e.g. after changes may have been missed.
+     */
+    synchronized void invalidateAll() {
+        loading.clear();
+        loaded.clear();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    private static class LoadResult {
+        private final List<Punishment> punishments;
+        private final long loadedAt;
+
+        private LoadResult(List<Punishment> punishments, long loadedAt) {
+            this.punishments = punishments;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -6,18 +6,34 @@ import lombok.NoArgsConstructor;
 import me.leoko.advancedban.AdvancedBan;
 import me.leoko.advancedban.AdvancedBanLogger;
 import me.leoko.advancedban.AdvancedBanPlayer;
+import me.leoko.advancedban.configuration.Configuration;
 import me.leoko.advancedban.manager.DatabaseManager;
 import me.leoko.advancedban.manager.MessageManager;
 import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.utils.IdentifierCodec;
+import me.leoko.advancedban.utils.PeerChannel;
+import me.leoko.advancedban.utils.RowMapper;
 import me.leoko.advancedban.utils.SQLQuery;
+import me.leoko.advancedban.utils.Subnet;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Predicate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class PunishmentManager {
@@ -26,15 +42,451 @@ public class PunishmentManager {
     private static final PunishmentManager instance = new PunishmentManager();
 
     private final AdvancedBanLogger logger = AdvancedBanLogger.getInstance();
-    private final Set<Punishment> punishments = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private final Set<Punishment> history = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Loaded punishments of online players by their UUID and IP
+    private final Map<Object, PunishmentBucket> buckets = new ConcurrentHashMap<>();
     private final Set<Object> cached = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Players whose data has been accepted, so discarding them twice does not release their buckets twice
+    private final Set<UUID> accepted = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Current mute of online players, checked on every chat message and command
+    private final Map<UUID, MuteState> muteStates = new ConcurrentHashMap<>();
+    private static final int SWEEP_CHUNK_SIZE = 500;
+    private boolean sweepScheduled = false;
+    private HistoryWriter historyWriter;
+    private BanIndex banIndex;
+    private final PunishmentLoader loader = new PunishmentLoader(this::getPunishmentFromResultSet);
+    private final ExpiryScheduler expiryScheduler = new ExpiryScheduler();
+    private final LayoutCache layoutCache = new LayoutCache();
+    private final SubnetBans subnetBans = new SubnetBans();
+    // Current punishments of online players and banned subnets
+    private final PunishmentIdMap loadedIds = new PunishmentIdMap();
+    private ChangeLog changeLog;
+    private PeerChannel peers;
+    // Loads chunks of identifiers in parallel, its threads stop while there is nothing to load
+    private volatile ThreadPoolExecutor loadExecutor;
 
     public void onEnable() {
-        DatabaseManager.getInstance().executeStatement(SQLQuery.DELETE_OLD_PUNISHMENTS, TimeManager.getTime());
+        Configuration.OfflineCache offlineCache = AdvancedBan.get().getConfiguration().getOfflineCache();
+        loader.setLimits(offlineCache.getSize(), offlineCache.getTime() * 1000L);
+
+        if (loadExecutor == null) {
+            int threads = DatabaseManager.getInstance().getMaxConnections();
+            loadExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "AdvancedBan Loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            loadExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        if (!sweepScheduled) {
+            sweepScheduled = true;
+            AdvancedBan.get().scheduleRepeatingAsyncTask(this::sweepExpired, 20, 20 * 60);
+            AdvancedBan.get().scheduleRepeatingAsyncTask(this::expireLoaded, 20, 20);
+        }
+
+        Configuration.HistoryWrites historyWrites = AdvancedBan.get().getConfiguration().getHistoryWrites();
+        if (historyWriter == null && historyWrites.getDurability() == Configuration.Durability.BATCHED) {
+            HistoryWriter writer = new HistoryWriter(historyWrites.getCapacity());
+            long interval = Math.max(1, historyWrites.getFlushInterval() / 50);
+            AdvancedBan.get().scheduleRepeatingAsyncTask(writer::flush, interval, interval);
+            historyWriter = writer;
+        }
+
+        Configuration.ChangeLog changes = AdvancedBan.get().getConfiguration().getChangeLog();
+        if (changeLog == null && changes.isEnabled()) {
+            ChangeLog log = new ChangeLog(changes.getKeepTime() * 1000L);
+            log.start();
+            changeLog = log;
+            long interval = Math.max(1, changes.getPollInterval() / 50);
+            AdvancedBan.get().scheduleRepeatingAsyncTask(this::applyChanges, interval, interval);
+            AdvancedBan.get().scheduleRepeatingAsyncTask(log::prune, 20 * 60, 20 * 60);
+        }
 
-        AdvancedBan.get().getOnlinePlayers()
-                .forEach(player -> load(player.getUniqueId(), player.getName(), player.getAddress().getAddress()));
+        Configuration.Peers peerConfig = AdvancedBan.get().getConfiguration().getPeers();
+        if (peers == null && peerConfig.isEnabled()) {
+            startPeers(peerConfig);
+        }
+
+        if (banIndex == null && AdvancedBan.get().getConfiguration().isBanIndex()) {
+            BanIndex index = new BanIndex();
+            banIndex = index;
+            AdvancedBan.get().runAsyncTask(() -> index.load(this::getPunishmentFromResultSet));
+        }
+
+        subnetBans.load(this::getPunishmentFromResultSet).forEach(loadedIds::putIfAbsent);
+        loadOnlinePlayers();
+    }
+
+    /**
+     * Loads the punishments of all online players, e.g. after a reload, with one query per
+     * {@link SQLQuery#BATCH_SIZE} identifiers, run in parallel on the available connections.
+     * Their history is still loaded on first use.
+     */
+    private void loadOnlinePlayers() {
+        Collection<AdvancedBanPlayer> players = AdvancedBan.get().getOnlinePlayers();
+        if (players.isEmpty()) {
+            return;
+        }
+
+        Set<Object> identifiers = new LinkedHashSet<>();
+        for (AdvancedBanPlayer player : players) {
+            identifiers.add(player.getUniqueId());
+            identifiers.add(player.getAddress().getAddress());
+        }
+        Map<Object, Set<Punishment>> loaded = loadCurrent(identifiers);
+
+        if (loaded == null) {
+            logger.warn("Not able to load the punishments of all online players at once, loading them one by one instead");
+        }
+        for (AdvancedBanPlayer player : players) {
+            InetAddress address = player.getAddress().getAddress();
+            if (loaded != null) {
+                Set<Punishment> punishments = new HashSet<>(loaded.getOrDefault(player.getUniqueId(), Collections.emptySet()));
+                punishments.addAll(loaded.getOrDefault(address, Collections.emptySet()));
+                acceptData(new InterimData(player.getUniqueId(), player.getName(), address, punishments));
+            } else {
+                acceptData(load(player.getUniqueId(), player.getName(), address));
+            }
+        }
+    }
+
+    /**
+     * Loads the current punishments of the identifiers with one query per {@link SQLQuery#BATCH_SIZE}
+     * identifiers, run in parallel on the available connections.
+     *
+     * @return the punishments by their identifier or null if not all of them could be loaded
+     */
+    private Map<Object, Set<Punishment>> loadCurrent(Collection<Object> identifiers) {
+        Map<Object, Set<Punishment>> loaded = new HashMap<>();
+        if (identifiers.isEmpty()) {
+            return loaded;
+        }
+        List<Object> remaining = new ArrayList<>(identifiers);
+        List<Object[]> chunks = new ArrayList<>();
+        for (int i = 0; i < remaining.size(); i += SQLQuery.BATCH_SIZE) {
+            Object[] chunk = new Object[SQLQuery.BATCH_SIZE];
+            for (int j = 0; j < chunk.length; j++) {
+                // The last chunk repeats its last identifier, so every chunk uses the same statement
+                chunk[j] = remaining.get(Math.min(i + j, remaining.size() - 1));
+            }
+            chunks.add(chunk);
+        }
+
+        ExecutorService executor = loadExecutor;
+        if (executor == null) {
+            return null;
+        }
+        boolean success = true;
+        List<Future<List<Punishment>>> results = new ArrayList<>();
+        try {
+            for (Object[] chunk : chunks) {
+                results.add(executor.submit(() -> {
+                    List<Punishment> punishments = new ArrayList<>();
+                    return DatabaseManager.getInstance().stream(SQLQuery.SELECT_USER_PUNISHMENTS_BATCH,
+                            this::getPunishmentFromResultSet, punishments::add, chunk) ? punishments : null;
+                }));
+            }
+            for (Future<List<Punishment>> result : results) {
+                List<Punishment> punishments = result.get();
+                if (punishments == null) {
+                    success = false;
+                    continue;
+                }
+                for (Punishment punishment : punishments) {
+                    loaded.computeIfAbsent(punishment.getIdentifier(), identifier -> new HashSet<>()).add(punishment);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            success = false;
+        } catch (ExecutionException | RejectedExecutionException ex) {
+            logger.logException(ex);
+            success = false;
+        } finally {
+            results.forEach(result -> result.cancel(true));
+        }
+        return success ? loaded : null;
+    }
+
+    public void onDisable() {
+        if (historyWriter != null) {
+            historyWriter.flush();
+        }
+        if (peers != null) {
+            peers.close();
+            peers = null;
+        }
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+            loadExecutor = null;
+        }
+    }
+
+    private void startPeers(Configuration.Peers config) {
+        if (config.getSecret().isEmpty()) {
+            logger.warn("Not connecting to other servers as no secret has been set for the peers");
+            return;
+        }
+        try {
+            List<InetSocketAddress> nodes = new ArrayList<>();
+            for (String node : config.getNodes()) {
+                nodes.add(PeerChannel.parseAddress(node));
+            }
+            PeerChannel channel = new PeerChannel(PeerChannel.parseAddress(config.getBind()), nodes,
+                    config.getSecret().getBytes(StandardCharsets.UTF_8), new PeerChannel.Listener() {
+                @Override
+                public void onMessage(byte[] payload) {
+                    applyPeerMessage(payload);
+                }
+
+                @Override
+                public void onMissed() {
+                    logger.debug("Missed messages of another server, reading the punishments from the database");
+                    resynchronize();
+                }
+            });
+            channel.start();
+            peers = channel;
+        } catch (IOException | IllegalArgumentException ex) {
+            logger.warn("Not able to listen for other servers on " + config.getBind() + ": " + ex.getMessage());
+        }
+    }
+
+    private void applyPeerMessage(byte[] payload) {
+        PeerMessage message;
+        try {
+            message = PeerMessage.read(payload);
+        } catch (IOException ex) {
+            logger.warn("Received an invalid message from another server: " + ex.getMessage());
+            return;
+        }
+        if (message.punishment != null) {
+            applyChange(ChangeLog.Type.ADD, message.id, message.target, message.punishment);
+        } else {
+            Punishment current = DatabaseManager.getInstance()
+                    .queryFirst(SQLQuery.SELECT_PUNISHMENT_BY_ID, this::getPunishmentFromResultSet, message.id).orElse(null);
+            applyChange(current == null ? ChangeLog.Type.DELETE : ChangeLog.Type.UPDATE, message.id, message.target, current);
+        }
+    }
+
+    /**
+     * Reads the punishments of online players, the ban index and the subnet bans from the database again
+     * after changes of other servers may have been missed. With the change log enabled it is simply read right away.
+     */
+    public void resynchronize() {
+        if (changeLog != null) {
+            applyChanges();
+            return;
+        }
+        DatabaseManager.getInstance().syncMirror(true);
+        loader.invalidateAll();
+        if (banIndex != null) {
+            banIndex.load(this::getPunishmentFromResultSet);
+        }
+        subnetBans.load(this::getPunishmentFromResultSet).forEach(loadedIds::putIfAbsent);
+        List<Object> identifiers = new ArrayList<>(buckets.keySet());
+        Map<Object, Set<Punishment>> current = loadCurrent(identifiers);
+        if (current == null) {
+            logger.warn("Not able to read the punishments of online players again, changes of other servers may be missing");
+            return;
+        }
+        for (Object identifier : identifiers) {
+            PunishmentBucket bucket = buckets.get(identifier);
+            if (bucket == null) {
+                continue;
+            }
+            Set<Punishment> punishments = current.getOrDefault(identifier, Collections.emptySet());
+            for (Punishment loaded : new ArrayList<>(bucket.getPunishments())) {
+                if (!punishments.contains(loaded)) {
+                    applyChange(ChangeLog.Type.DELETE, loaded.getId().getAsInt(), identifier, null);
+                }
+            }
+            for (Punishment punishment : punishments) {
+                int id = punishment.getId().getAsInt();
+                applyChange(loadedIds.get(id) == null ? ChangeLog.Type.ADD : ChangeLog.Type.UPDATE, id, identifier, punishment);
+            }
+        }
+    }
+
+    /**
+     * Deletes expired punishments from the database in chunks and fires the revoke events for every deleted chunk.
+     * Loaded punishments are already removed when they end, this catches the ones of offline players.
+     *
+     * @return the amount of deleted punishments
+     */
+    public int sweepExpired() {
+        int deleted = 0;
+        while (true) {
+            List<Punishment> expired = getPunishments(SQLQuery.SELECT_EXPIRED_PUNISHMENTS, TimeManager.getTime(), SWEEP_CHUNK_SIZE);
+            if (expired.isEmpty()) {
+                break;
+            }
+
+            int removed = expire(expired);
+            if (removed < 0) {
+                break;
+            }
+            deleted += removed;
+
+            if (expired.size() < SWEEP_CHUNK_SIZE) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Removes the loaded temporary punishments that have ended since the last call.
+     *
+     * @return the amount of deleted punishments
+     */
+    public int expireLoaded() {
+        List<Punishment> expired = expiryScheduler.pollExpired();
+        return expired.isEmpty() ? 0 : Math.max(0, expire(expired));
+    }
+
+    /**
+     * Deletes the punishments in one batch, removes them from the caches and fires the revoke events
+     * for the ones that have actually been deleted, so a punishment removed by the sweep and its
+     * scheduled expiry at the same time is only reported once.
+     *
+     * @return the amount of deleted punishments or -1 if the database could not be updated
+     */
+    private int expire(List<Punishment> expired) {
+        List<Object[]> ids = new ArrayList<>(expired.size());
+        for (Punishment punishment : expired) {
+            ids.add(new Object[]{punishment.getId().getAsInt()});
+        }
+        List<Object[]> subnetIds = new ArrayList<>();
+        for (Punishment punishment : expired) {
+            if (punishment.getIdentifier() instanceof Subnet) {
+                subnetIds.add(new Object[]{punishment.getId().getAsInt()});
+            }
+        }
+        Optional<int[]> counts = DatabaseManager.getInstance().transaction(connection -> {
+            if (!subnetIds.isEmpty()) {
+                DatabaseManager.getInstance().executeBatch(connection, SQLQuery.DELETE_SUBNET_BAN, subnetIds);
+            }
+            return DatabaseManager.getInstance().executeBatch(connection, SQLQuery.DELETE_PUNISHMENT, ids);
+        });
+        if (!counts.isPresent()) {
+            return -1;
+        }
+
+        List<Punishment> deleted = new ArrayList<>(expired.size());
+        for (int i = 0; i < expired.size(); i++) {
+            Punishment punishment = expired.get(i);
+            loader.invalidate(punishment.getIdentifier());
+            unload(punishment.getIdentifier(), punishment.getId().getAsInt());
+            int count = counts.get()[i];
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                deleted.add(punishment);
+            }
+            refreshMuteState(punishment);
+        }
+
+        if (!deleted.isEmpty()) {
+            logger.debug("Deleted " + deleted.size() + " expired punishments");
+            AdvancedBan.get().runSyncTask(() -> deleted.forEach(punishment -> AdvancedBan.get().callRevokePunishmentEvent(punishment, true)));
+        }
+        return deleted.size();
+    }
+
+    /**
+     * Removes the punishment from everything it has been loaded into.
+     */
+    private void unload(Object identifier, int id) {
+        Punishment loaded = loadedIds.get(id);
+        if (loaded != null) {
+            loadedIds.remove(id);
+            expiryScheduler.cancel(Collections.singleton(loaded));
+        }
+        layoutCache.invalidate(id);
+        if (banIndex != null) {
+            banIndex.remove(identifier, id);
+        }
+        if (identifier instanceof Subnet) {
+            subnetBans.remove((Subnet) identifier, id);
+        }
+        PunishmentBucket bucket = buckets.get(identifier);
+        if (bucket != null) {
+            bucket.removePunishments(punishment -> punishment.getId().isPresent() && punishment.getId().getAsInt() == id);
+        }
+    }
+
+    /**
+     * Applies the changes made by other servers sharing the database to the loaded punishments.
+     *
+     * @return the amount of applied changes
+     */
+    public int applyChanges() {
+        if (changeLog == null) {
+            return 0;
+        }
+        List<ChangeLog.Change> changes = changeLog.poll(this::getPunishmentFromResultSet);
+        for (ChangeLog.Change change : changes) {
+            applyChange(change.type, change.id, change.target, change.punishment);
+        }
+        if (!changes.isEmpty()) {
+            logger.debug("Applied " + changes.size() + " punishment changes of other servers");
+        }
+        return changes.size();
+    }
+
+    /**
+     * Applies a change made by another server. Changes may arrive more than once,
+     * e.g. through the peers and the change log, applying them again changes nothing.
+     *
+     * @param current the punishment as it is now or null if it has been removed
+     */
+    private void applyChange(ChangeLog.Type type, int id, Object target, Punishment current) {
+        DatabaseManager.getInstance().refreshMirror(id);
+        loader.invalidate(target);
+        layoutCache.invalidate(id);
+        if (current == null) {
+            unload(target, id);
+        } else {
+            Punishment loaded = loadedIds.get(id);
+            if (loaded != null) {
+                loaded.setReason(current.getReason().orElse(null));
+                current = loaded;
+            } else {
+                if (subnetBans.add(current)) {
+                    loadedIds.putIfAbsent(current);
+                }
+                PunishmentBucket bucket = buckets.get(target);
+                if (bucket != null) {
+                    bucket.addPunishment(current);
+                    if (loadedIds.putIfAbsent(current) == null) {
+                        expiryScheduler.schedule(current);
+                    }
+                    if (type == ChangeLog.Type.ADD) {
+                        bucket.addHistory(current);
+                    }
+                }
+                if (type == ChangeLog.Type.ADD && current.getType().getBasic() == PunishmentType.BAN) {
+                    kickAffected(current);
+                }
+            }
+            if (banIndex != null) {
+                banIndex.remove(target, id);
+                banIndex.add(current);
+            }
+        }
+        if (target instanceof UUID) {
+            refreshMuteState((UUID) target);
+        }
+    }
+
+    private void kickAffected(Punishment punishment) {
+        Object identifier = punishment.getIdentifier();
+        for (AdvancedBanPlayer player : AdvancedBan.get().getOnlinePlayers()) {
+            InetAddress address = player.getAddress().getAddress();
+            if (identifier.equals(player.getUniqueId()) || identifier.equals(address)
+                    || identifier instanceof Subnet && ((Subnet) identifier).contains(address)) {
+                AdvancedBan.get().runSyncTask(() -> player.kick(getLayoutBSN(punishment)));
+            }
+        }
     }
 
     private static String[] getDurationParameter(String... parameter) {
@@ -57,106 +509,213 @@ public class PunishmentManager {
         Objects.requireNonNull(uuid, "uuid");
         Objects.requireNonNull(name, "name");
         Objects.requireNonNull(address, "address");
-        Set<Punishment> punishments = new HashSet<>();
-        Set<Punishment> history = new HashSet<>();
-        try {
-            ResultSet rs = DatabaseManager.getInstance().executeResultStatement(SQLQuery.SELECT_USER_PUNISHMENTS_WITH_IP, uuid, address.getHostAddress());
-            while (rs.next()) {
-                punishments.add(getPunishmentFromResultSet(rs));
-            }
-            rs.close();
-
-            rs = DatabaseManager.getInstance().executeResultStatement(SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY_WITH_IP, uuid, address.getHostAddress());
-            while (rs.next()) {
-                history.add(getPunishmentFromResultSet(rs));
-            }
-            rs.close();
-        } catch (SQLException ex) {
-            logger.warn("An error has occurred loading the punishments from the database.");
-            logger.logException(ex);
-        }
-        return new InterimData(uuid, name, address, punishments, history);
+        Set<Punishment> punishments = new HashSet<>(loader.loadForLogin(uuid));
+        punishments.addAll(loader.loadForLogin(address));
+        return new InterimData(uuid, name, address, punishments);
     }
 
     public Optional<Punishment> getBan(@Nonnull InterimData data) {
         Objects.requireNonNull(data, "data");
+        long now = TimeManager.getTime();
         for (Punishment pt : data.getPunishments()) {
-            if (pt.getType().getBasic() == PunishmentType.BAN && !pt.isExpired()) {
+            if (pt.getType().getBasic() == PunishmentType.BAN && !pt.isExpired(now)) {
                 return Optional.of(pt);
             }
         }
-        return Optional.empty();
+        return subnetBans.getBan(data.getAddress());
     }
 
-    public void discard(AdvancedBanPlayer player) {
+    public synchronized void discard(AdvancedBanPlayer player) {
         cached.remove(player.getName().toLowerCase());
-        cached.remove(player.getUniqueId());
-        cached.remove(player.getAddress());
-
-        Predicate<Punishment> remove = pun -> pun.getIdentifier().equals(player.getUniqueId()) ||
-                pun.getIdentifier().equals(player.getAddress().getAddress());
-
-        punishments.removeIf(remove);
-        history.removeIf(remove);
+        muteStates.remove(player.getUniqueId());
+        if (!accepted.remove(player.getUniqueId())) {
+            return;
+        }
+        release(player.getUniqueId());
+        release(player.getAddress().getAddress());
     }
 
-    public void acceptData(@Nonnull InterimData data) {
+    public synchronized void acceptData(@Nonnull InterimData data) {
         Objects.requireNonNull(data, "data");
-        getLoadedPunishments(false).addAll(data.getPunishments());
-        getLoadedHistory().addAll(data.getHistory());
         addCached(data.getName().toLowerCase());
-        addCached(data.getAddress());
-        addCached(data.getUuid());
+        if (!accepted.add(data.getUuid())) {
+            return;
+        }
+        // Another online player on the same IP already loaded everything of it
+        boolean loadUuid = retain(data.getUuid());
+        boolean loadAddress = retain(data.getAddress());
+
+        for (Punishment punishment : data.getPunishments()) {
+            PunishmentBucket bucket = buckets.get(punishment.getIdentifier());
+            if (bucket != null && (punishment.getIdentifier().equals(data.getUuid()) ? loadUuid : loadAddress)) {
+                bucket.addPunishment(punishment);
+                if (loadedIds.putIfAbsent(punishment) == null) {
+                    expiryScheduler.schedule(punishment);
+                }
+            }
+        }
+        refreshMuteState(data.getUuid());
+    }
+
+    /**
+     * Updates the mute state of the player with this UUID, if online, from the loaded punishments.
+     * Has to be called after every change to the player's mutes or to the messages.
+     */
+    public synchronized void refreshMuteState(UUID uuid) {
+        if (AdvancedBan.get().getPlayer(uuid).isPresent()) {
+            // Not loaded yet, accepting the player's data refreshes it again
+            PunishmentBucket bucket = buckets.get(uuid);
+            List<Punishment> mutes = bucket == null ? Collections.emptyList() : bucket.getCurrent(PunishmentType.MUTE);
+            if (mutes.isEmpty()) {
+                muteStates.remove(uuid);
+            } else {
+                muteStates.put(uuid, new MuteState(mutes.get(0)));
+            }
+        }
+    }
+
+    /**
+     * @return the current mute of the online player with this UUID or null if the player is not muted
+     */
+    public MuteState getMuteState(UUID uuid) {
+        return muteStates.get(uuid);
+    }
+
+    /**
+     * Drops all rendered layouts, has to be called after the layouts or messages have been reloaded.
+     */
+    public void clearLayouts() {
+        layoutCache.clear();
+    }
+
+    private void refreshMuteState(Punishment punishment) {
+        if (punishment.getType().getBasic() == PunishmentType.MUTE && punishment.getIdentifier() instanceof UUID) {
+            refreshMuteState((UUID) punishment.getIdentifier());
+        }
+    }
+
+    /**
+     * Loads the history of an online player in the background, so later lookups do not need the database.
+     * Histories longer than the history limit are not kept, they are always looked up in the database instead.
+     */
+    private void loadHistory(Object identifier, PunishmentBucket bucket) {
+        int version = bucket.startHistoryLoad();
+        if (version < 0) {
+            return;
+        }
+        AdvancedBan.get().runAsyncTask(() -> {
+            if (historyWriter != null) {
+                historyWriter.flush();
+            }
+            int limit = AdvancedBan.get().getConfiguration().getHistoryLimit();
+            List<Punishment> history = new ArrayList<>();
+            boolean loaded = limit > 0
+                    ? DatabaseManager.getInstance().stream(SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY_PAGE,
+                    this::getHistoryFromResultSet, history::add, identifier, limit + 1, 0)
+                    : DatabaseManager.getInstance().stream(SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY,
+                    this::getHistoryFromResultSet, history::add, identifier);
+            bucket.finishHistoryLoad(version, loaded ? history : null, limit);
+        });
+    }
+
+    private boolean retain(Object identifier) {
+        boolean[] first = new boolean[1];
+        buckets.compute(identifier, (key, bucket) -> {
+            bucket = bucket == null ? new PunishmentBucket() : bucket;
+            first[0] = bucket.retain();
+            return bucket;
+        });
+        return first[0];
+    }
+
+    private void release(Object identifier) {
+        buckets.computeIfPresent(identifier, (key, bucket) -> {
+            if (!bucket.release()) {
+                return bucket;
+            }
+            expiryScheduler.cancel(bucket.getPunishments());
+            loadedIds.removeAll(bucket.getPunishments());
+            return null;
+        });
     }
 
     public List<Punishment> getPunishments(SQLQuery sqlQuery, Object... parameters) {
-        List<Punishment> ptList = new ArrayList<>();
+        return DatabaseManager.getInstance().query(sqlQuery, this::getPunishmentFromResultSet, parameters);
+    }
 
-        ResultSet rs = DatabaseManager.getInstance().executeResultStatement(sqlQuery, parameters);
-        try {
-            while (rs.next()) {
-                Punishment punishment = getPunishmentFromResultSet(rs);
-                ptList.add(punishment);
-            }
-            rs.close();
-        } catch (SQLException ex) {
-            logger.info("An error has occurred executing a query in the database.");
-            logger.debug("Query: \n" + sqlQuery);
-            logger.logException(ex);
+    public int countPunishments(PunishmentListing listing, Object target) {
+        return DatabaseManager.getInstance().count(listing.getCountQuery(), getListingParameters(listing, target).toArray());
+    }
+
+    /**
+     * Loads one page of the listing.
+     *
+     * @param cursor the page, looked up by the position of the previous page's last entry if it has one
+     *               and by offset otherwise
+     */
+    public List<Punishment> getPunishmentPage(PunishmentListing listing, Object target, PunishmentListing.Cursor cursor, int limit) {
+        List<Object> parameters = getListingParameters(listing, target);
+        RowMapper<Punishment> mapper = listing == PunishmentListing.HISTORY
+                ? this::getHistoryFromResultSet : this::getPunishmentFromResultSet;
+        if (!cursor.hasPosition()) {
+            parameters.add(limit);
+            parameters.add((cursor.getPage() - 1) * limit);
+            return DatabaseManager.getInstance().query(listing.getPageQuery(), mapper, parameters.toArray());
         }
-        return ptList;
+        parameters.add(cursor.getStart());
+        parameters.add(cursor.getStart());
+        parameters.add(cursor.getId());
+        parameters.add(limit);
+        return DatabaseManager.getInstance().query(listing.getPageAfterQuery(), mapper, parameters.toArray());
+    }
+
+    private List<Object> getListingParameters(PunishmentListing listing, Object target) {
+        List<Object> parameters = new ArrayList<>();
+        if (listing.isTargeted()) {
+            parameters.add(target);
+        }
+        if (listing.isCurrent()) {
+            parameters.add(TimeManager.getTime());
+        }
+        return parameters;
     }
 
     public List<Punishment> getPunishments(Object identifier, PunishmentType type, boolean current) {
         List<Punishment> punishments = new ArrayList<>();
 
-        if (isCached(identifier)) {
-            for (Iterator<Punishment> iterator = (current ? this.punishments : history).iterator(); iterator.hasNext(); ) {
-                Punishment punishment = iterator.next();
-                if ((type == null || type == punishment.getType().getBasic()) && punishment.getIdentifier().equals(identifier)) {
-                    if (!current || !punishment.isExpired()) {
+        PunishmentBucket bucket = buckets.get(identifier);
+        if (bucket != null) {
+            if (current) {
+                return bucket.getCurrent(type);
+            }
+            List<Punishment> history = bucket.getHistory();
+            if (history != null) {
+                for (Punishment punishment : history) {
+                    if (type == null || type == punishment.getType().getBasic()) {
                         punishments.add(punishment);
-                    } else {
-                        deletePunishment(punishment, true);
-                        iterator.remove();
                     }
                 }
+                return punishments;
             }
-        } else {
-            try (ResultSet rs = DatabaseManager.getInstance().
-                    executeResultStatement(current ? SQLQuery.SELECT_USER_PUNISHMENTS : SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY,
-                            identifier.toString())) {
-                while (rs.next()) {
-                    Punishment punishment = getPunishmentFromResultSet(rs);
-                    if ((type == null || type == punishment.getType().getBasic()) && (!current || !punishment.isExpired())) {
-                        punishments.add(punishment);
-                    }
+            loadHistory(identifier, bucket);
+        }
+
+        if (current) {
+            long now = TimeManager.getTime();
+            for (Punishment punishment : loader.load(identifier)) {
+                if ((type == null || type == punishment.getType().getBasic()) && !punishment.isExpired(now)) {
+                    punishments.add(punishment);
                 }
-            } catch (SQLException ex) {
-                logger.info("An error has occurred getting the punishments for " + identifier);
-                logger.logException(ex);
             }
+            return punishments;
         }
+
+        DatabaseManager.getInstance().stream(SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY,
+                this::getHistoryFromResultSet, punishment -> {
+                    if (type == null || type == punishment.getType().getBasic()) {
+                        punishments.add(punishment);
+                    }
+                }, identifier);
         return punishments;
     }
 
@@ -170,19 +729,12 @@ public class PunishmentManager {
     }
 
     public Optional<Punishment> getPunishment(int id) {
-        ResultSet rs = DatabaseManager.getInstance().executeResultStatement(SQLQuery.SELECT_PUNISHMENT_BY_ID, id);
-        Punishment pt = null;
-        try {
-            if (rs.next()) {
-                pt = getPunishmentFromResultSet(rs);
-            }
-            rs.close();
-        } catch (SQLException ex) {
-            logger.info("An error has occurred getting a punishment by his id.");
-            logger.debug("Punishment id: '" + id + "'");
-            logger.logException(ex);
+        Punishment loaded = loadedIds.get(id);
+        if (loaded != null) {
+            return loaded.isExpired() ? Optional.empty() : Optional.of(loaded);
         }
-        return pt == null || pt.isExpired() ? Optional.empty() : Optional.of(pt);
+        return DatabaseManager.getInstance().queryFirst(SQLQuery.SELECT_PUNISHMENT_BY_ID, this::getPunishmentFromResultSet, id)
+                .filter(pt -> !pt.isExpired());
     }
 
     public Optional<Punishment> getPunishment(Object object, PunishmentType type) {
@@ -198,67 +750,107 @@ public class PunishmentManager {
         return getPunishment(object, PunishmentType.MUTE, true).isPresent();
     }
 
+    /**
+     * @param name lower case name, UUID or IP
+     */
     public boolean isCached(Object name) {
-        return cached.contains(name);
+        return buckets.containsKey(name) || cached.contains(name);
     }
 
     public void addCached(Object object) {
-        cached.add(object);
+        if (object instanceof String) {
+            cached.add(object);
+        } else {
+            retain(object);
+        }
     }
 
     public int getCalculationLevel(Object identifier, String layout) {
-        if (isCached(identifier)) {
-            return (int) history.stream().filter(pt -> pt.getIdentifier().equals(identifier) && layout.equalsIgnoreCase(pt.getCalculation())).count();
-        } else {
-            ResultSet resultSet = DatabaseManager.getInstance().executeResultStatement(SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY_BY_CALCULATION, identifier.toString(), layout);
-            int i = 0;
-            try {
-                while (resultSet.next()) {
-                    i++;
-                }
-                resultSet.close();
-            } catch (SQLException ex) {
-                logger.warn("An error has occurred getting the level for the layout '" + layout + "' for '" + identifier + "'");
-                logger.logException(ex);
+        PunishmentBucket bucket = buckets.get(identifier);
+        if (bucket != null) {
+            List<Punishment> history = bucket.getHistory();
+            if (history != null) {
+                return (int) history.stream().filter(pt -> layout.equalsIgnoreCase(pt.getCalculation())).count();
             }
-            return i;
+            loadHistory(identifier, bucket);
         }
+
+        IntSupplier written = () -> DatabaseManager.getInstance().count(SQLQuery.COUNT_USER_PUNISHMENTS_HISTORY_BY_CALCULATION, identifier, layout);
+        return historyWriter == null ? written.getAsInt() : historyWriter.count(identifier, layout, written);
     }
 
     public int getCurrentWarns(Object object) {
-        return getWarns(object).size();
+        PunishmentBucket bucket = buckets.get(object);
+        if (bucket != null) {
+            return bucket.getCurrent(PunishmentType.WARNING).size();
+        }
+        return getPunishments(object, PunishmentType.WARNING, true).size();
     }
 
     public boolean isBanned(Object object) {
         return getPunishment(object, PunishmentType.BAN, true).isPresent();
     }
 
+    /**
+     * @return amount of lookups of players who are not online that have been answered from memory
+     */
+    public long getOfflineCacheHits() {
+        return loader.getHits();
+    }
+
+    /**
+     * @return amount of lookups of players who are not online that needed the database
+     */
+    public long getOfflineCacheMisses() {
+        return loader.getMisses();
+    }
+
+    /**
+     * @return true if the ban index is enabled and loaded, so {@link #getIndexedBan(UUID, InetAddress)} can be used
+     */
+    public boolean isBanIndexReady() {
+        return banIndex != null && banIndex.isReady();
+    }
+
+    /**
+     * Looks up the current ban of a joining player in the ban index without querying the database.
+     */
+    public Optional<Punishment> getIndexedBan(@Nonnull UUID uuid, @Nonnull InetAddress address) {
+        if (!isBanIndexReady()) {
+            throw new IllegalStateException("The ban index is not loaded");
+        }
+        Optional<Punishment> ban = banIndex.getBan(uuid);
+        if (!ban.isPresent()) {
+            ban = banIndex.getBan(address);
+        }
+        return ban.isPresent() ? ban : subnetBans.getBan(address);
+    }
+
+    /**
+     * @param checkExpired if true expired punishments are left out
+     * @return a snapshot of the punishments of all online players
+     */
     public Set<Punishment> getLoadedPunishments(boolean checkExpired) {
-        if (checkExpired) {
-            List<Punishment> toDelete = new ArrayList<>();
-            for (Punishment pu : punishments) {
-                if (pu.isExpired()) {
-                    toDelete.add(pu);
+        Set<Punishment> loaded = new HashSet<>();
+        long now = TimeManager.getTime();
+        for (PunishmentBucket bucket : buckets.values()) {
+            for (Punishment punishment : bucket.getPunishments()) {
+                if (!checkExpired || !punishment.isExpired(now)) {
+                    loaded.add(punishment);
                 }
             }
-            for (Punishment pu : toDelete) {
-                deletePunishment(pu, true);
-            }
         }
-        return punishments;
+        return loaded;
     }
 
     public Punishment getPunishmentFromResultSet(ResultSet rs) throws SQLException {
-        String id = rs.getString("uuid").replace("/", "");
-        Object identifier = null;
-        if (id.matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
-            try {
-                identifier = InetAddress.getByName(id);
-            } catch (Exception e) {
-            }
-        }
+        Object identifier = IdentifierCodec.decode(rs.getInt("identifierKind"), rs.getBytes("identifier"));
         if (identifier == null) {
-            identifier = UUID.fromString(id);
+            String id = rs.getString("uuid");
+            identifier = IdentifierCodec.parse(id);
+            if (identifier == null) {
+                throw new SQLException("Invalid punishment identifier " + id);
+            }
         }
         Punishment punishment = new Punishment(
                 identifier,
@@ -275,8 +867,27 @@ public class PunishmentManager {
         return punishment;
     }
 
-    public Set<Punishment> getLoadedHistory() {
-        return history;
+    /**
+     * Reads an entry of the history table, whose ids are not the ids of the punishments.
+     */
+    public Punishment getHistoryFromResultSet(ResultSet rs) throws SQLException {
+        Punishment punishment = getPunishmentFromResultSet(rs);
+        punishment.setHistory(true);
+        return punishment;
+    }
+
+    /**
+     * @return a snapshot of the history of all online players whose history has been loaded
+     */
+    public List<Punishment> getLoadedHistory() {
+        List<Punishment> loaded = new ArrayList<>();
+        for (PunishmentBucket bucket : buckets.values()) {
+            List<Punishment> history = bucket.getHistory();
+            if (history != null) {
+                loaded.addAll(history);
+            }
+        }
+        return loaded;
     }
 
     public long getCalculation(String layout, String name, String uuid) {
@@ -296,8 +907,21 @@ public class PunishmentManager {
         Objects.requireNonNull(punishment, "punishment");
         if (!punishment.getId().isPresent()) throw new IllegalArgumentException("Punishment is not registered");
 
-        DatabaseManager.getInstance().executeStatement(SQLQuery.UPDATE_PUNISHMENT_REASON,
-                punishment.getReason().orElse(null), punishment.getId().getAsInt());
+        int id = punishment.getId().getAsInt();
+        DatabaseManager.getInstance().transaction(connection -> {
+            int updated = DatabaseManager.getInstance().executeUpdate(connection, SQLQuery.UPDATE_PUNISHMENT_REASON,
+                    punishment.getReason().orElse(null), id);
+            if (changeLog != null) {
+                changeLog.record(connection, ChangeLog.Type.UPDATE, id, punishment.getIdentifier());
+            }
+            return updated;
+        });
+        loader.invalidate(punishment.getIdentifier());
+        layoutCache.invalidate(id);
+        refreshMuteState(punishment);
+        if (peers != null) {
+            peers.send(PeerMessage.invalidated(id, punishment.getIdentifier()));
+        }
     }
 
     public void addPunishment(@Nonnull Punishment punishment) {
@@ -310,42 +934,45 @@ public class PunishmentManager {
             throw new IllegalArgumentException("Punishment has already been added");
         }
 
-        DatabaseManager.getInstance().executeStatement(
-                SQLQuery.INSERT_PUNISHMENT_HISTORY,
+        Object[] columns = {
                 punishment.getName(),
-                punishment.getIdentifier().toString(),
+                punishment.getIdentifier(),
                 punishment.getReason().orElse(null),
                 punishment.getOperator(),
                 punishment.getType().name(),
                 punishment.getStart(),
                 punishment.getEnd(),
-                punishment.getCalculation()
-        );
+                punishment.getCalculation(),
+                IdentifierCodec.encode(punishment.getIdentifier()),
+                IdentifierCodec.getKind(punishment.getIdentifier())
+        };
+
+        if (historyWriter != null) {
+            historyWriter.add(punishment, columns);
+        } else if (punishment.getType() == PunishmentType.KICK) {
+            DatabaseManager.getInstance().executeStatement(SQLQuery.INSERT_PUNISHMENT_HISTORY, columns);
+        }
 
         if (punishment.getType() != PunishmentType.KICK) {
-            ResultSet rs;
-            try {
-                DatabaseManager.getInstance().executeStatement(
-                        SQLQuery.INSERT_PUNISHMENT,
-                        punishment.getName(),
-                        punishment.getIdentifier().toString(),
-                        punishment.getReason().orElse(null),
-                        punishment.getOperator(),
-                        punishment.getType().name(),
-                        punishment.getStart(),
-                        punishment.getEnd(),
-                        punishment.getCalculation()
-                );
-                rs = DatabaseManager.getInstance().executeResultStatement(SQLQuery.SELECT_EXACT_PUNISHMENT,
-                        punishment.getIdentifier().toString(), punishment.getStart());
-                if (rs.next()) {
-                    punishment.setId(rs.getInt("id"));
-                } else {
-                    logger.warn("Not able to update ID of punishment! Please restart the server to resolve this issue!\n" + toString());
+            Optional<Integer> id = DatabaseManager.getInstance().transaction(connection -> {
+                if (historyWriter == null) {
+                    DatabaseManager.getInstance().executeInsert(connection, SQLQuery.INSERT_PUNISHMENT_HISTORY, columns);
+                }
+                int insertedId = DatabaseManager.getInstance().executeInsert(connection, SQLQuery.INSERT_PUNISHMENT, columns);
+                if (punishment.getIdentifier() instanceof Subnet) {
+                    Subnet subnet = (Subnet) punishment.getIdentifier();
+                    DatabaseManager.getInstance().executeUpdate(connection, SQLQuery.INSERT_SUBNET_BAN,
+                            insertedId, subnet.getNetwork().getAddress(), subnet.getPrefixLength());
+                }
+                if (changeLog != null) {
+                    changeLog.record(connection, ChangeLog.Type.ADD, insertedId, punishment.getIdentifier());
                 }
-                rs.close();
-            } catch (SQLException ex) {
-                logger.logException(ex);
+                return insertedId;
+            });
+            if (id.isPresent()) {
+                punishment.setId(id.get());
+            } else {
+                logger.warn("Not able to save punishment! Please check the database connection.\n" + punishment);
             }
         }
 
@@ -376,18 +1003,42 @@ public class PunishmentManager {
 
         Optional<AdvancedBanPlayer> player = AdvancedBan.get().getPlayer(punishment.getIdentifier().toString());
 
-        if (player.isPresent()) {
+        if (punishment.getIdentifier() instanceof Subnet) {
+            // Not a single player but everyone within the range is affected
+            if (punishment.getType().getBasic() == PunishmentType.BAN) {
+                kickAffected(punishment);
+            }
+        } else if (player.isPresent()) {
             if (punishment.getType().getBasic() == PunishmentType.BAN || punishment.getType() == PunishmentType.KICK) {
                 AdvancedBan.get().runSyncTask(() -> player.get().kick(getLayoutBSN(punishment)));
             } else {
-                for (String str : getLayout(punishment)) {
+                for (String str : getLayout(punishment, cWarnings)) {
                     player.get().sendMessage(str);
                 }
-                getLoadedPunishments(false).add(punishment);
             }
         }
 
-        getLoadedHistory().add(punishment);
+        loader.invalidate(punishment.getIdentifier());
+        if (banIndex != null && punishment.getId().isPresent()) {
+            banIndex.add(punishment);
+        }
+        if (punishment.getId().isPresent() && subnetBans.add(punishment)) {
+            loadedIds.putIfAbsent(punishment);
+        }
+
+        PunishmentBucket bucket = buckets.get(punishment.getIdentifier());
+        if (bucket != null) {
+            if (punishment.getType() != PunishmentType.KICK && punishment.getId().isPresent()) {
+                bucket.addPunishment(punishment);
+                loadedIds.putIfAbsent(punishment);
+                expiryScheduler.schedule(punishment);
+            }
+            bucket.addHistory(punishment);
+        }
+        refreshMuteState(punishment);
+        if (peers != null && punishment.getId().isPresent()) {
+            peers.send(PeerMessage.added(punishment));
+        }
 
         AdvancedBan.get().callPunishmentEvent(punishment);
     }
@@ -414,9 +1065,25 @@ public class PunishmentManager {
             throw new IllegalArgumentException("Punishment has not been added");
         }
 
-        DatabaseManager.getInstance().executeStatement(SQLQuery.DELETE_PUNISHMENT, punishment.getId().getAsInt());
-
-        getLoadedPunishments(false).remove(punishment);
+        int id = punishment.getId().getAsInt();
+        DatabaseManager.getInstance().transaction(connection -> {
+            if (punishment.getIdentifier() instanceof Subnet) {
+                DatabaseManager.getInstance().executeUpdate(connection, SQLQuery.DELETE_SUBNET_BAN, id);
+            }
+            int deleted = DatabaseManager.getInstance().executeUpdate(connection, SQLQuery.DELETE_PUNISHMENT, id);
+            if (changeLog != null) {
+                changeLog.record(connection, ChangeLog.Type.DELETE, id, punishment.getIdentifier());
+            }
+            return deleted;
+        });
+
+        loader.invalidate(punishment.getIdentifier());
+        expiryScheduler.cancel(Collections.singleton(punishment));
+        unload(punishment.getIdentifier(), id);
+        refreshMuteState(punishment);
+        if (peers != null) {
+            peers.send(PeerMessage.invalidated(id, punishment.getIdentifier()));
+        }
 
         logger.debug("Deleted punishment " + punishment.getId().getAsInt() + " from " +
                 punishment.getName() + " punishment reason: " +
@@ -461,34 +1128,69 @@ public class PunishmentManager {
         AdvancedBan.get().notify("ab.notify." + punishment.getType().getName() + "", notification);
     }
 
+    /**
+     * @return the layout shown to the punished player, must not be modified
+     */
     public List<String> getLayout(@Nonnull Punishment punishment) {
         Objects.requireNonNull(punishment, "punishment");
+        return getLayout(punishment, punishment.getType().getBasic() == PunishmentType.WARNING
+                ? getCurrentWarns(punishment.getIdentifier()) + 1 : 0);
+    }
+
+    private List<String> getLayout(Punishment punishment, int warns) {
+        boolean temp = punishment.getType().isTemp();
+        boolean warning = punishment.getType().getBasic() == PunishmentType.WARNING;
+        List<String> layout = punishment.getId().isPresent()
+                ? layoutCache.get(punishment.getId().getAsInt(), () -> renderLayout(punishment))
+                : renderLayout(punishment);
+        if (!temp && !warning) {
+            return layout;
+        }
+
+        String duration = temp ? getDuration(punishment, false) : null;
+        String count = Integer.toString(warns);
+        List<String> rendered = new ArrayList<>(layout.size());
+        for (String line : layout) {
+            if (temp) {
+                line = line.replace("%DURATION%", duration);
+            }
+            if (warning) {
+                line = line.replace("%COUNT%", count);
+            }
+            rendered.add(line);
+        }
+        return rendered;
+    }
 
+    /**
+     * Renders the layout of the punishment, leaving the remaining duration of temporary punishments
+     * and the warn count of warnings as placeholders.
+     */
+    private List<String> renderLayout(Punishment punishment) {
         String operator = punishment.getOperator();
         String prefix = MessageManager.getPrefix().orElse("");
-        String duration = getDuration(punishment, false);
+        String duration = punishment.getType().isTemp() ? "%DURATION%" : getDuration(punishment, false);
         String hexId = Integer.toHexString(punishment.getId().orElse(-1)).toUpperCase();
         String id = Integer.toString(punishment.getId().orElse(-1));
         String date = TimeManager.getDate(punishment.getStart());
-        String count = punishment.getType().getBasic() == PunishmentType.WARNING ?
-                (getCurrentWarns(punishment.getIdentifier()) + 1) + "" : "0";
+        String count = punishment.getType().getBasic() == PunishmentType.WARNING ? "%COUNT%" : "0";
 
-        if (punishment.getReason().isPresent() &&
-                (punishment.getReason().get().startsWith("@") || punishment.getReason().get().startsWith("~"))) {
-            return MessageManager.getLayout(
-                    "Message." + punishment.getReason().get().split(" ")[0].substring(1),
+        String reason = punishment.getReason().orElse(null);
+        if (reason != null && (reason.startsWith("@") || reason.startsWith("~"))) {
+            int space = reason.indexOf(' ');
+            return Collections.unmodifiableList(MessageManager.getLayout(
+                    "Message." + (space < 0 ? reason.substring(1) : reason.substring(1, space)),
                     "OPERATOR", operator,
                     "PREFIX", prefix,
                     "DURATION", duration,
-                    "REASON", punishment.getReason().get().split(" ").length < 2 ? "" :
-                            punishment.getReason().get().substring(punishment.getReason().get().split(" ")[0].length() + 1),
+                    "REASON", space < 0 ? "" : reason.substring(space + 1),
                     "HEXID", hexId,
                     "ID", id,
                     "DATE", date,
                     "COUNT", count
-            );
+            ));
         } else {
-            return MessageManager.getMessageList(
+            return Collections.unmodifiableList(MessageManager.getMessageList(
                     punishment.getType().getConfSection() + ".Layout",
                     "OPERATOR", operator,
                     "PREFIX", prefix,
@@ -498,7 +1200,7 @@ public class PunishmentManager {
                     "ID", id,
                     "DATE", date,
                     "COUNT", count
-            );
+            ));
         }
     }
 
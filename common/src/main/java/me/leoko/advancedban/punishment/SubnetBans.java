@@ -0,0 +1,167 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.AdvancedBanLogger;
+import me.leoko.advancedban.manager.DatabaseManager;
+import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.utils.RowMapper;
+import me.leoko.advancedban.utils.SQLQuery;
+import me.leoko.advancedban.utils.Subnet;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * All current bans of subnets in a binary trie over the address bits, one for IPv4 and one for IPv6.
+ * A ban of a /n subnet sits n levels deep, so finding the bans covering an address
+ * takes at most one step per address bit no matter how many subnets are banned.
+ * Lookups do not lock, changes replace the ban lists of the affected node.
+ */
+class SubnetBans {
+    private volatile Node ipv4 = new Node();
+    private volatile Node ipv6 = new Node();
+    // Changes made while loading, applied to the loaded tries before they replace the current ones. Guarded by this
+    private final List<BiConsumer<Node, Node>> changes = new ArrayList<>();
+    private boolean loading = false;
+    private final Object loadLock = new Object();
+
+    /**
+     * Loads the bans into new tries by the network and prefix length stored for them,
+     * which replace the current ones once loaded.
+     *
+     * @return the loaded bans
+     */
+    List<Punishment> load(RowMapper<Punishment> mapper) {
+        synchronized (loadLock) {
+            synchronized (this) {
+                loading = true;
+            }
+            List<Map.Entry<Subnet, Punishment>> rows = new ArrayList<>();
+            RowMapper<Map.Entry<Subnet, Punishment>> row = rs -> new AbstractMap.SimpleImmutableEntry<>(readSubnet(rs), mapper.map(rs));
+            boolean success = DatabaseManager.getInstance().stream(SQLQuery.SELECT_ACTIVE_SUBNET_BANS, row, rows::add, TimeManager.getTime());
+            Node loadedIPv4 = new Node();
+            Node loadedIPv6 = new Node();
+            List<Punishment> bans = new ArrayList<>(rows.size());
+            for (Map.Entry<Subnet, Punishment> ban : rows) {
+                add(ban.getKey().isIPv4() ? loadedIPv4 : loadedIPv6, ban.getKey(), ban.getValue());
+                bans.add(ban.getValue());
+            }
+            synchronized (this) {
+                loading = false;
+                if (success) {
+                    // A change made while loading may or may not have been read, so it is applied again
+                    changes.forEach(change -> change.accept(loadedIPv4, loadedIPv6));
+                    ipv4 = loadedIPv4;
+                    ipv6 = loadedIPv6;
+                }
+                changes.clear();
+            }
+            if (!success) {
+                AdvancedBanLogger.getInstance().warn("Not able to load the subnet bans, joining players may not be checked against them");
+                return Collections.emptyList();
+            }
+            AdvancedBanLogger.getInstance().debug("Loaded " + bans.size() + " subnet bans");
+            return bans;
+        }
+    }
+
+    /**
+     * @return true if the punishment is a subnet ban and has been added
+     */
+    synchronized boolean add(Punishment punishment) {
+        if (!(punishment.getIdentifier() instanceof Subnet) || punishment.getType().getBasic() != PunishmentType.BAN) {
+            return false;
+        }
+        Subnet subnet = (Subnet) punishment.getIdentifier();
+        change((v4, v6) -> add(subnet.isIPv4() ? v4 : v6, subnet, punishment));
+        return true;
+    }
+
+    synchronized void remove(Subnet subnet, int id) {
+        change((v4, v6) -> remove(subnet.isIPv4() ? v4 : v6, subnet, id));
+    }
+
+    private void change(BiConsumer<Node, Node> change) {
+        if (loading) {
+            changes.add(change);
+        }
+        change.accept(ipv4, ipv6);
+    }
+
+    private static void add(Node root, Subnet subnet, Punishment punishment) {
+        byte[] network = subnet.getNetwork().getAddress();
+        Node node = root;
+        for (int i = 0; i < subnet.getPrefixLength(); i++) {
+            int bit = bit(network, i);
+            Node child = node.children.get(bit);
+            if (child == null) {
+                child = new Node();
+                node.children.set(bit, child);
+            }
+            node = child;
+        }
+        List<Punishment> bans = new ArrayList<>(node.bans);
+        bans.add(punishment);
+        node.bans = bans;
+    }
+
+    private static void remove(Node root, Subnet subnet, int id) {
+        byte[] network = subnet.getNetwork().getAddress();
+        Node node = root;
+        for (int i = 0; i < subnet.getPrefixLength() && node != null; i++) {
+            node = node.children.get(bit(network, i));
+        }
+        if (node != null) {
+            List<Punishment> bans = new ArrayList<>(node.bans);
+            bans.removeIf(punishment -> punishment.getId().isPresent() && punishment.getId().getAsInt() == id);
+            node.bans = bans.isEmpty() ? Collections.emptyList() : bans;
+        }
+    }
+
+    /**
+     * @return the current ban of the narrowest banned subnet containing the address
+     */
+    Optional<Punishment> getBan(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        Node node = address instanceof Inet4Address ? ipv4 : ipv6;
+        long now = TimeManager.getTime();
+        Punishment found = null;
+        for (int i = 0; node != null; i++) {
+            for (Punishment punishment : node.bans) {
+                if (!punishment.isExpired(now)) {
+                    found = punishment;
+                    break;
+                }
+            }
+            node = i < bytes.length * 8 ? node.children.get(bit(bytes, i)) : null;
+        }
+        return Optional.ofNullable(found);
+    }
+
+    private static Subnet readSubnet(ResultSet rs) throws SQLException {
+        try {
+            return Subnet.of(InetAddress.getByAddress(rs.getBytes("network")), rs.getInt("prefixLength"));
+        } catch (UnknownHostException | IllegalArgumentException ex) {
+            throw new SQLException("Invalid subnet of punishment #" + rs.getInt("id"), ex);
+        }
+    }
+
+    private static int bit(byte[] bytes, int index) {
+        return (bytes[index / 8] >>> (7 - index % 8)) & 1;
+    }
+
+    private static class Node {
+        private final AtomicReferenceArray<Node> children = new AtomicReferenceArray<>(2);
+        private volatile List<Punishment> bans = Collections.emptyList();
+    }
+}
@@ -0,0 +1,166 @@
+package me.leoko.advancedban.utils;
+
+import me.leoko.advancedban.AdvancedBanLogger;
+import me.leoko.advancedban.configuration.MySQLConfiguration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small blocking JDBC connection pool.
+ * Idle connections are reused most-recently-used first, so connections above the minimum
+ * size stay untouched and can be evicted by {@link #maintain()}.
+ */
+public class ConnectionPool {
+    private static final AdvancedBanLogger logger = AdvancedBanLogger.getInstance();
+
+    private final ConnectionFactory factory;
+    private final MySQLConfiguration.Pool settings;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(ConnectionFactory factory, MySQLConfiguration.Pool settings) throws SQLException {
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(Math.max(1, settings.getMaxSize()), true);
+
+        // Fail fast if the database cannot be reached at all
+        idle.offerFirst(new PooledConnection(this, factory.create()));
+        try {
+            fill();
+        } catch (SQLException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool has been closed");
+        }
+        try {
+            if (!permits.tryAcquire(settings.getConnectionTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + settings.getConnectionTimeout()
+                        + "ms waiting for a database connection (" + borrowed.size() + " in use)");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", ex);
+        }
+
+        try {
+            PooledConnection connection;
+            long now = System.currentTimeMillis();
+            while ((connection = idle.pollFirst()) != null) {
+                // Connections that have just been in use are assumed to still work
+                if (!connection.isSuspect() && now - connection.getLastUsed() < settings.getValidationThreshold()
+                        || connection.isValid(settings.getValidationTimeout())) {
+                    break;
+                }
+                logger.debug("Discarding broken pooled database connection");
+                connection.discard();
+            }
+            if (connection == null) {
+                connection = new PooledConnection(this, factory.create());
+            }
+            connection.markBorrowed(settings.getLeakDetectionThreshold() > 0);
+            borrowed.add(connection);
+            return connection;
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    void release(PooledConnection connection) {
+        if (!borrowed.remove(connection)) {
+            return;
+        }
+        connection.markReleased();
+        if (closed) {
+            connection.discard();
+        } else {
+            idle.offerFirst(connection);
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the idle timeout, tops the pool
+     * back up to its minimum size and reports connections that have been borrowed for too long.
+     */
+    public void maintain() {
+        if (closed) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && idle.size() + borrowed.size() > settings.getMinSize()) {
+            PooledConnection connection = iterator.next();
+            if (now - connection.getLastUsed() > settings.getIdleTimeout() && idle.remove(connection)) {
+                connection.discard();
+            }
+        }
+
+        try {
+            fill();
+        } catch (SQLException ex) {
+            logger.warn("Unable to open a new pooled database connection");
+            logger.logException(ex);
+        }
+
+        if (settings.getLeakDetectionThreshold() > 0) {
+            for (PooledConnection connection : borrowed) {
+                if (!connection.isLeakReported() && now - connection.getBorrowedAt() > settings.getLeakDetectionThreshold()) {
+                    connection.markLeakReported();
+                    logger.warn("A database connection has been in use for more than "
+                            + settings.getLeakDetectionThreshold() + "ms, it might have been leaked");
+                    if (connection.getBorrowTrace() != null) {
+                        logger.logException(connection.getBorrowTrace());
+                    }
+                }
+            }
+        }
+    }
+
+    private void fill() throws SQLException {
+        while (!closed && idle.size() + borrowed.size() < Math.min(settings.getMinSize(), settings.getMaxSize())) {
+            idle.offerLast(new PooledConnection(this, factory.create()));
+        }
+    }
+
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            connection.discard();
+        }
+    }
+
+    public int getMaxSize() {
+        return Math.max(1, settings.getMaxSize());
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+}
@@ -0,0 +1,116 @@
+package me.leoko.advancedban.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+
+/**
+ * Converts punishment identifiers to and from their 16 byte database representation.
+ * UUIDs are stored as their two longs, IP addresses as IPv6 where IPv4 is mapped into ::ffff:0:0/96.
+ */
+@UtilityClass
+public class IdentifierCodec {
+    public static final int KIND_UNKNOWN = 0;
+    public static final int KIND_UUID = 1;
+    public static final int KIND_IP = 2;
+
+    /**
+     * Parses the text form of an identifier as stored in the legacy uuid column.
+     *
+     * @return the UUID, InetAddress or Subnet or null if the text is none of them
+     */
+    public Object parse(String identifier) {
+        if (identifier.indexOf('/') > 0) {
+            return Subnet.parse(identifier);
+        }
+        // Old rows contain IPs as InetAddress#toString, starting with a slash
+        IpKey ip = IpKey.parse(identifier, identifier.startsWith("/") ? 1 : 0, identifier.length());
+        if (ip != null) {
+            return ip.toInetAddress();
+        }
+        String id = identifier.replace("/", "");
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public int getKind(Object identifier) {
+        if (identifier instanceof UUID) {
+            return KIND_UUID;
+        } else if (identifier instanceof InetAddress) {
+            return KIND_IP;
+        }
+        return KIND_UNKNOWN;
+    }
+
+    /**
+     * @return the encoded identifier or null if it is neither a UUID nor an InetAddress
+     */
+    public byte[] encode(Object identifier) {
+        byte[] bytes = new byte[16];
+        if (identifier instanceof UUID) {
+            writeLong(bytes, 0, ((UUID) identifier).getMostSignificantBits());
+            writeLong(bytes, 8, ((UUID) identifier).getLeastSignificantBits());
+        } else if (identifier instanceof Inet4Address) {
+            bytes[10] = (byte) 0xff;
+            bytes[11] = (byte) 0xff;
+            System.arraycopy(((InetAddress) identifier).getAddress(), 0, bytes, 12, 4);
+        } else if (identifier instanceof InetAddress) {
+            System.arraycopy(((InetAddress) identifier).getAddress(), 0, bytes, 0, 16);
+        } else {
+            return null;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the decoded identifier or null if the kind is unknown
+     */
+    public Object decode(int kind, byte[] bytes) {
+        if (bytes == null || bytes.length != 16) {
+            return null;
+        }
+        if (kind == KIND_UUID) {
+            return new UUID(readLong(bytes, 0), readLong(bytes, 8));
+        } else if (kind == KIND_IP) {
+            try {
+                if (isMappedIPv4(bytes)) {
+                    return InetAddress.getByAddress(new byte[]{bytes[12], bytes[13], bytes[14], bytes[15]});
+                }
+                return InetAddress.getByAddress(bytes);
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private boolean isMappedIPv4(byte[] bytes) {
+        for (int i = 0; i < 10; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return bytes[10] == (byte) 0xff && bytes[11] == (byte) 0xff;
+    }
+
+    private void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
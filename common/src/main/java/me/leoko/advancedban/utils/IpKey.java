@@ -0,0 +1,250 @@
+package me.leoko.advancedban.utils;
+
+import lombok.EqualsAndHashCode;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * An IPv4 or IPv6 address packed into two longs, IPv4 being mapped into ::ffff:0:0/96
+ * the same way {@link IdentifierCodec} stores it. Parsing a literal allocates nothing but the key itself
+ * and never resolves host names, unlike {@link InetAddress#getByName(String)}.
+ */
+@EqualsAndHashCode
+public final class IpKey {
+    private static final long IPV4_MAPPED = 0xffffL << 32;
+
+    private final long high;
+    private final long low;
+
+    private IpKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static IpKey of(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return new IpKey(0, IPV4_MAPPED | (readInt(bytes, 0) & 0xffffffffL));
+        }
+        return new IpKey(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    /**
+     * @return the key or null if the text is not an IPv4 or IPv6 address literal
+     */
+    public static IpKey parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    public static IpKey parse(CharSequence text, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+        int lastColon = -1;
+        for (int i = end - 1; i >= start; i--) {
+            if (text.charAt(i) == ':') {
+                lastColon = i;
+                break;
+            }
+        }
+        if (lastColon < 0) {
+            long ipv4 = parseIPv4(text, start, end);
+            return ipv4 < 0 ? null : new IpKey(0, IPV4_MAPPED | ipv4);
+        }
+        return parseIPv6(text, start, end, lastColon);
+    }
+
+    /**
+     * @return the 32 bits of the address or -1 if the text is not a dotted IPv4 address
+     */
+    private static long parseIPv4(CharSequence text, int start, int end) {
+        long address = 0;
+        int parts = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && parts < 3) {
+                address = address << 8 | value;
+                parts++;
+                value = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        return digits == 0 || parts != 3 ? -1 : address << 8 | value;
+    }
+
+    private static IpKey parseIPv6(CharSequence text, int start, int end, int lastColon) {
+        // An embedded IPv4 address like ::ffff:1.2.3.4 takes the place of the last two groups
+        long ipv4 = -1;
+        int hexEnd = end;
+        for (int i = lastColon + 1; i < end; i++) {
+            if (text.charAt(i) == '.') {
+                ipv4 = parseIPv4(text, lastColon + 1, end);
+                if (ipv4 < 0) {
+                    return null;
+                }
+                hexEnd = lastColon + 1;
+                break;
+            }
+        }
+
+        // Groups in front of :: are placed directly, the ones behind it are collected right-aligned
+        long high = 0;
+        long low = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int groups = 0;
+        boolean gap = false;
+        int i = start;
+        if (text.charAt(i) == ':') {
+            if (i + 1 >= hexEnd || text.charAt(i + 1) != ':') {
+                return null;
+            }
+            gap = true;
+            i += 2;
+        }
+        while (i < hexEnd) {
+            int value = 0;
+            int digits = 0;
+            while (i < hexEnd && digits <= 4) {
+                int digit = hexDigit(text.charAt(i));
+                if (digit < 0) {
+                    break;
+                }
+                value = value << 4 | digit;
+                digits++;
+                i++;
+            }
+            if (digits == 0 || digits > 4 || ++groups > 8) {
+                return null;
+            }
+            if (gap) {
+                tailHigh = tailHigh << 16 | tailLow >>> 48;
+                tailLow = tailLow << 16 | value;
+            } else if (groups <= 4) {
+                high |= (long) value << 16 * (4 - groups);
+            } else {
+                low |= (long) value << 16 * (8 - groups);
+            }
+
+            if (i == hexEnd) {
+                break;
+            }
+            if (text.charAt(i) != ':') {
+                return null;
+            }
+            i++;
+            if (i == hexEnd) {
+                // A single trailing colon is only allowed in front of an embedded IPv4 address
+                if (ipv4 < 0) {
+                    return null;
+                }
+                break;
+            }
+            if (text.charAt(i) == ':') {
+                if (gap) {
+                    return null;
+                }
+                gap = true;
+                i++;
+            }
+        }
+        if (ipv4 >= 0) {
+            groups += 2;
+            if (gap) {
+                tailHigh = tailHigh << 32 | tailLow >>> 32;
+                tailLow = tailLow << 32 | ipv4;
+            } else {
+                low |= ipv4;
+            }
+        }
+        if (gap ? groups > 7 : groups != 8) {
+            return null;
+        }
+        return new IpKey(high | tailHigh, low | tailLow);
+    }
+
+    public boolean isIPv4() {
+        return high == 0 && (low & ~0xffffffffL) == IPV4_MAPPED;
+    }
+
+    public InetAddress toInetAddress() {
+        byte[] bytes;
+        if (isIPv4()) {
+            bytes = new byte[4];
+            writeInt(bytes, 0, (int) low);
+        } else {
+            bytes = new byte[16];
+            writeInt(bytes, 0, (int) (high >>> 32));
+            writeInt(bytes, 4, (int) high);
+            writeInt(bytes, 8, (int) (low >>> 32));
+            writeInt(bytes, 12, (int) low);
+        }
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the address in the same form as {@link InetAddress#getHostAddress()}
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(39);
+        if (isIPv4()) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                builder.append((low >>> shift) & 0xff);
+                if (shift > 0) {
+                    builder.append('.');
+                }
+            }
+        } else {
+            for (int group = 0; group < 8; group++) {
+                long half = group < 4 ? high : low;
+                builder.append(Long.toHexString((half >>> 16 * (3 - group % 4)) & 0xffff));
+                if (group < 7) {
+                    builder.append(':');
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+                | (bytes[offset + 2] & 0xff) << 8 | bytes[offset + 3] & 0xff;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (readInt(bytes, offset) & 0xffffffffL) << 32 | readInt(bytes, offset + 4) & 0xffffffffL;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,460 @@
+package me.leoko.advancedban.utils;
+
+import me.leoko.advancedban.AdvancedBanLogger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends small messages to the other servers listed in the configuration and receives theirs,
+ * all on one thread using non-blocking sockets. Every server connects to each of the others to send
+ * and accepts their connections to receive, so a server that is down only misses messages.
+ * <p>
+ * Frames are {@code length, type, node, seq, payload, tag}, where the tag is an HMAC-SHA256 of the
+ * frame with the shared secret, cut to {@link #TAG_LENGTH} bytes. Every server numbers its messages,
+ * so a receiver notices messages it has missed, e.g. because a connection broke, either with the next
+ * message or with the next ping and then falls back to the database.
+ * Messages are handed to the listener in order on a separate thread.
+ */
+public class PeerChannel implements AutoCloseable {
+    private static final byte TYPE_MESSAGE = 0;
+    private static final byte TYPE_PING = 1;
+    private static final int HEADER_LENGTH = 1 + 8 + 8;
+    private static final int TAG_LENGTH = 16;
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+    private static final int MAX_QUEUED = 1000;
+    private static final long PING_INTERVAL = 5000;
+    private static final long MIN_RECONNECT_DELAY = 500;
+    private static final long MAX_RECONNECT_DELAY = 30_000;
+
+    private final AdvancedBanLogger logger = AdvancedBanLogger.getInstance();
+    private final InetSocketAddress bind;
+    private final List<Outbound> peers = new ArrayList<>();
+    private final SecretKeySpec key;
+    private final Listener listener;
+    private final long node = new SecureRandom().nextLong();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AdvancedBan-Peers-Dispatch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Last sequence number received from each server, only used on the selector thread
+    private final Map<Long, Long> received = new HashMap<>();
+    private long seq = 0;
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * @param bind   address to accept the connections of the other servers on, port 0 picks a free port
+     * @param peers  addresses of the other servers
+     * @param secret shared by all servers, frames with a wrong tag are dropped together with their connection
+     */
+    public PeerChannel(InetSocketAddress bind, List<InetSocketAddress> peers, byte[] secret, Listener listener) {
+        if (secret.length == 0) {
+            throw new IllegalArgumentException("The secret must not be empty");
+        }
+        this.bind = bind;
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+        this.listener = listener;
+        for (InetSocketAddress peer : peers) {
+            this.peers.add(new Outbound(peer));
+        }
+    }
+
+    /**
+     * Parses an address in the form host:port, IPv6 addresses written as [address]:port.
+     */
+    public static InetSocketAddress parseAddress(String text) {
+        int colon = text.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Missing port in " + text);
+        }
+        String host = text.substring(0, colon);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        return InetSocketAddress.createUnresolved(host, Integer.parseInt(text.substring(colon + 1)));
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(bind.isUnresolved() ? new InetSocketAddress(bind.getHostString(), bind.getPort()) : bind);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException | UnresolvedAddressException ex) {
+            server.close();
+            selector.close();
+            throw ex;
+        }
+        running = true;
+        thread = new Thread(this::run, "AdvancedBan-Peers");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the port connections are accepted on
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Queues the message for all other servers. Servers that are not connected get it once they are,
+     * unless too many messages are waiting for them.
+     */
+    public void send(byte[] payload) {
+        if (payload.length > MAX_FRAME_LENGTH - HEADER_LENGTH - TAG_LENGTH) {
+            throw new IllegalArgumentException("Message too long: " + payload.length);
+        }
+        // Numbered and queued at once, so frames are queued in the order of their numbers
+        synchronized (this) {
+            ByteBuffer frame = frame(TYPE_MESSAGE, ++seq, payload);
+            for (Outbound peer : peers) {
+                peer.enqueue(frame.duplicate());
+            }
+        }
+        if (running) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatcher.shutdown();
+    }
+
+    private void run() {
+        long nextPing = System.currentTimeMillis() + PING_INTERVAL;
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                if (now >= nextPing) {
+                    ping();
+                    nextPing = now + PING_INTERVAL;
+                }
+                long wait = nextPing - now;
+                for (Outbound peer : peers) {
+                    if (peer.channel == null) {
+                        if (now >= peer.nextAttempt) {
+                            connect(peer, now);
+                        }
+                        wait = Math.min(wait, Math.max(1, peer.nextAttempt - now));
+                    } else if (peer.connected && peer.hasQueued()) {
+                        peer.key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                }
+
+                selector.select(Math.max(1, wait));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (IOException | RuntimeException ex) {
+                // Keeps running, the other servers would not be reached anymore otherwise
+                logger.warn("Error in the connection to other servers: " + ex.getMessage());
+                logger.logException(ex);
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        Object attachment = key.attachment();
+        try {
+            if (key.isAcceptable()) {
+                SocketChannel channel = server.accept();
+                if (channel != null) {
+                    channel.configureBlocking(false);
+                    channel.register(selector, SelectionKey.OP_READ, new Inbound());
+                }
+            } else if (attachment instanceof Outbound) {
+                Outbound peer = (Outbound) attachment;
+                if (key.isConnectable()) {
+                    peer.channel.finishConnect();
+                    peer.connected = true;
+                    peer.reconnectDelay = MIN_RECONNECT_DELAY;
+                    logger.debug("Connected to server " + peer.address);
+                    key.interestOps(peer.hasQueued() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                } else if (key.isWritable()) {
+                    if (peer.flush()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                } else if (key.isReadable()) {
+                    // Nothing is ever sent back, this only notices closed connections
+                    if (peer.channel.read(ByteBuffer.allocate(64)) < 0) {
+                        throw new IOException("Connection closed by " + peer.address);
+                    }
+                }
+            } else if (attachment instanceof Inbound && key.isReadable()) {
+                read((SocketChannel) key.channel(), (Inbound) attachment);
+            }
+        } catch (IOException | GeneralSecurityException ex) {
+            if (attachment instanceof Outbound) {
+                disconnect((Outbound) attachment, ex);
+            } else {
+                logger.debug("Connection of another server closed: " + ex.getMessage());
+                closeQuietly(key);
+            }
+        }
+    }
+
+    private void connect(Outbound peer, long now) {
+        try {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            peer.channel = channel;
+            peer.connected = false;
+            // Resolved on every attempt, so changed host names are picked up
+            InetSocketAddress address = new InetSocketAddress(peer.address.getHostString(), peer.address.getPort());
+            peer.key = channel.register(selector, SelectionKey.OP_CONNECT, peer);
+            if (channel.connect(address)) {
+                peer.connected = true;
+                peer.key.interestOps(SelectionKey.OP_WRITE);
+            }
+        } catch (IOException | UnresolvedAddressException ex) {
+            disconnect(peer, ex);
+        }
+        peer.nextAttempt = now + peer.reconnectDelay;
+    }
+
+    private void disconnect(Outbound peer, Exception cause) {
+        if (peer.connected) {
+            logger.debug("Lost connection to server " + peer.address + ": " + cause.getMessage());
+        }
+        if (peer.key != null) {
+            closeQuietly(peer.key);
+        } else if (peer.channel != null) {
+            try {
+                peer.channel.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+        peer.channel = null;
+        peer.key = null;
+        peer.connected = false;
+        peer.partial = null;
+        peer.nextAttempt = System.currentTimeMillis() + peer.reconnectDelay;
+        peer.reconnectDelay = Math.min(MAX_RECONNECT_DELAY, peer.reconnectDelay * 2);
+    }
+
+    private synchronized void ping() {
+        ByteBuffer frame = frame(TYPE_PING, seq, new byte[0]);
+        for (Outbound peer : peers) {
+            if (peer.connected) {
+                peer.enqueue(frame.duplicate());
+            }
+        }
+    }
+
+    private void read(SocketChannel channel, Inbound inbound) throws IOException, GeneralSecurityException {
+        if (channel.read(inbound.buffer) < 0) {
+            throw new IOException("Connection closed");
+        }
+        inbound.buffer.flip();
+        while (inbound.buffer.remaining() >= 4) {
+            int length = inbound.buffer.getInt(inbound.buffer.position());
+            if (length < HEADER_LENGTH + TAG_LENGTH || length > MAX_FRAME_LENGTH) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (inbound.buffer.remaining() < 4 + length) {
+                break;
+            }
+            byte[] frame = new byte[length];
+            inbound.buffer.getInt();
+            inbound.buffer.get(frame);
+            receive(frame, inbound.mac());
+        }
+        inbound.buffer.compact();
+    }
+
+    private void receive(byte[] frame, Mac mac) throws IOException {
+        int content = frame.length - TAG_LENGTH;
+        mac.update(frame, 0, content);
+        byte[] tag = Arrays.copyOf(mac.doFinal(), TAG_LENGTH);
+        if (!MessageDigest.isEqual(tag, Arrays.copyOfRange(frame, content, frame.length))) {
+            throw new IOException("Invalid tag, the secrets of the servers do not match");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(frame, 0, content);
+        byte type = buffer.get();
+        long sender = buffer.getLong();
+        long number = buffer.getLong();
+        if (sender == node) {
+            return;
+        }
+        Long last = received.get(sender);
+        if (last != null && number <= last) {
+            // A ping with nothing sent since the last message, or a replayed frame
+            return;
+        }
+        received.put(sender, number);
+        // The first message of a server can not be checked, anything before it has been loaded from the database
+        boolean missed = last != null && number > last + (type == TYPE_MESSAGE ? 1 : 0);
+        byte[] payload = type == TYPE_MESSAGE ? Arrays.copyOfRange(frame, HEADER_LENGTH, content) : null;
+        dispatcher.execute(() -> {
+            try {
+                if (missed) {
+                    listener.onMissed();
+                }
+                if (payload != null) {
+                    listener.onMessage(payload);
+                }
+            } catch (RuntimeException ex) {
+                logger.logException(ex);
+            }
+        });
+    }
+
+    private ByteBuffer frame(byte type, long number, byte[] payload) {
+        int length = HEADER_LENGTH + payload.length + TAG_LENGTH;
+        ByteBuffer frame = ByteBuffer.allocate(4 + length);
+        frame.putInt(length).put(type).putLong(node).putLong(number).put(payload);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            mac.update(frame.array(), 4, length - TAG_LENGTH);
+            frame.put(mac.doFinal(), 0, TAG_LENGTH);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+        frame.flip();
+        return frame;
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+    }
+
+    public interface Listener {
+        void onMessage(byte[] payload);
+
+        /**
+         * Called before the next message if messages of another server have been lost.
+         */
+        void onMissed();
+    }
+
+    private class Inbound {
+        private final ByteBuffer buffer = ByteBuffer.allocate(MAX_FRAME_LENGTH + 4);
+        private Mac mac;
+
+        private Mac mac() throws GeneralSecurityException {
+            if (mac == null) {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+            }
+            return mac;
+        }
+    }
+
+    private static class Outbound {
+        private final InetSocketAddress address;
+        private final Deque<ByteBuffer> queue = new ArrayDeque<>();
+        private SocketChannel channel;
+        private SelectionKey key;
+        private boolean connected = false;
+        // Frame that has only been written in part
+        private ByteBuffer partial;
+        private long nextAttempt = 0;
+        private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+        private Outbound(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        private synchronized void enqueue(ByteBuffer frame) {
+            if (queue.size() >= MAX_QUEUED) {
+                // The receiver notices the gap and falls back to the database
+                queue.poll();
+            }
+            queue.add(frame);
+        }
+
+        private synchronized boolean hasQueued() {
+            return partial != null || !queue.isEmpty();
+        }
+
+        /**
+         * @return true if everything queued has been written
+         */
+        private boolean flush() throws IOException {
+            while (true) {
+                ByteBuffer frame;
+                synchronized (this) {
+                    frame = partial != null ? partial : queue.poll();
+                    partial = null;
+                }
+                if (frame == null) {
+                    return true;
+                }
+                channel.write(frame);
+                if (frame.hasRemaining()) {
+                    synchronized (this) {
+                        partial = frame;
+                    }
+                    return false;
+                }
+            }
+        }
+    }
+}
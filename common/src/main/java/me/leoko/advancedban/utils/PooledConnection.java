@@ -0,0 +1,121 @@
+package me.leoko.advancedban.utils;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A physical connection handed out by a {@link ConnectionPool}.
+ * Closing it returns the connection to the pool instead of closing the socket.
+ */
+public class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    @Getter
+    private final Connection connection;
+    private final Map<SQLQuery, PreparedStatement> statements = new EnumMap<>(SQLQuery.class);
+    private final Map<SQLQuery, String> statementQueries = new EnumMap<>(SQLQuery.class);
+
+    @Getter(AccessLevel.PACKAGE)
+    private long lastUsed = System.currentTimeMillis();
+    @Getter(AccessLevel.PACKAGE)
+    private long borrowedAt;
+    @Getter(AccessLevel.PACKAGE)
+    private Throwable borrowTrace;
+    @Getter(AccessLevel.PACKAGE)
+    private boolean leakReported;
+    // Set once a statement failed, the connection might be broken even if it has just been in use
+    @Getter(AccessLevel.PACKAGE)
+    private volatile boolean suspect;
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    void markBorrowed(boolean trace) {
+        borrowedAt = System.currentTimeMillis();
+        borrowTrace = trace ? new Throwable("Connection borrowed here") : null;
+        leakReported = false;
+    }
+
+    void markReleased() {
+        lastUsed = System.currentTimeMillis();
+        borrowTrace = null;
+    }
+
+    void markLeakReported() {
+        leakReported = true;
+    }
+
+    /**
+     * Returns the prepared statement for the given query, preparing it on first use.
+     * The statement stays open for the lifetime of this connection and must not be closed by the caller.
+     * Inserts are prepared to return their generated keys.
+     */
+    public PreparedStatement prepare(SQLQuery query, String sql) throws SQLException {
+        PreparedStatement statement = statements.get(query);
+        if (statement == null || statement.isClosed() || !sql.equals(statementQueries.get(query))) {
+            closeStatement(query);
+            statement = sql.startsWith("INSERT")
+                    ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(sql);
+            statements.put(query, statement);
+            statementQueries.put(query, sql);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Drops a cached statement, e.g. after it failed and might be in a broken state.
+     * The connection is validated again before it is handed out the next time.
+     */
+    public void invalidate(SQLQuery query) {
+        suspect = true;
+        closeStatement(query);
+    }
+
+    private void closeStatement(SQLQuery query) {
+        PreparedStatement statement = statements.remove(query);
+        statementQueries.remove(query);
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Closing a broken statement may fail, it is dropped either way
+            }
+        }
+    }
+
+    boolean isValid(int timeout) {
+        suspect = false;
+        try {
+            return !connection.isClosed() && connection.isValid(timeout);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    void discard() {
+        for (SQLQuery query : SQLQuery.values()) {
+            closeStatement(query);
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // The connection is broken or already gone, nothing left to clean up
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+}
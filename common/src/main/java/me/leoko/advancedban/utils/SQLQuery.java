@@ -63,86 +63,388 @@ public enum SQLQuery {
             "ALTER TABLE `PunishmentHistory` MODIFY `uuid` VARCHAR(36) NULL DEFAULT NULL",
             "ALTER TABLE PunishmentHistory ALTER COLUMN uuid VARCHAR(36)"
     ),
+    FIX_TIMESTAMPS_PUNISHMENT(
+            "ALTER TABLE `Punishments` MODIFY `start` BIGINT NULL DEFAULT NULL, MODIFY `end` BIGINT NULL DEFAULT NULL",
+            null
+    ),
+    FIX_TIMESTAMPS_PUNISHMENT_HISTORY(
+            "ALTER TABLE `PunishmentHistory` MODIFY `start` BIGINT NULL DEFAULT NULL, MODIFY `end` BIGINT NULL DEFAULT NULL",
+            null
+    ),
+    INDEX_PUNISHMENT_UUID(
+            "CREATE INDEX `Punishments_uuid` ON `Punishments` (`uuid`)",
+            "CREATE INDEX Punishments_uuid ON Punishments (uuid)"
+    ),
+    INDEX_PUNISHMENT_START(
+            "CREATE INDEX `Punishments_start` ON `Punishments` (`start`)",
+            "CREATE INDEX Punishments_start ON Punishments (start)"
+    ),
+    INDEX_PUNISHMENT_END(
+            "CREATE INDEX `Punishments_end` ON `Punishments` (`end`)",
+            "CREATE INDEX Punishments_end ON Punishments (end)"
+    ),
+    INDEX_PUNISHMENT_HISTORY_UUID_CALCULATION(
+            "CREATE INDEX `PunishmentHistory_uuid_calculation` ON `PunishmentHistory` (`uuid`, `calculation`)",
+            "CREATE INDEX PunishmentHistory_uuid_calculation ON PunishmentHistory (uuid, calculation)"
+    ),
+    INDEX_PUNISHMENT_HISTORY_START(
+            "CREATE INDEX `PunishmentHistory_start` ON `PunishmentHistory` (`start`)",
+            "CREATE INDEX PunishmentHistory_start ON PunishmentHistory (start)"
+    ),
+    FIX_IP_IDENTIFIERS_PUNISHMENT(
+            "UPDATE `Punishments` SET `uuid` = SUBSTRING(`uuid`, 2) WHERE `uuid` LIKE '/%'",
+            "UPDATE Punishments SET uuid = SUBSTRING(uuid, 2) WHERE uuid LIKE '/%'"
+    ),
+    FIX_IP_IDENTIFIERS_PUNISHMENT_HISTORY(
+            "UPDATE `PunishmentHistory` SET `uuid` = SUBSTRING(`uuid`, 2) WHERE `uuid` LIKE '/%'",
+            "UPDATE PunishmentHistory SET uuid = SUBSTRING(uuid, 2) WHERE uuid LIKE '/%'"
+    ),
+    CREATE_TABLE_SCHEMA_VERSION(
+            "CREATE TABLE IF NOT EXISTS `SchemaVersion` (" +
+            "`version` int NOT NULL," +
+            "`applied` BIGINT NOT NULL," +
+            "PRIMARY KEY (`version`))",
+
+            "CREATE TABLE IF NOT EXISTS SchemaVersion (" +
+            "version INTEGER PRIMARY KEY," +
+            "applied BIGINT NOT NULL)"
+    ),
+    SELECT_SCHEMA_VERSION(
+            "SELECT MAX(`version`) FROM `SchemaVersion`",
+            "SELECT MAX(version) FROM SchemaVersion"
+    ),
+    INSERT_SCHEMA_VERSION(
+            "INSERT INTO `SchemaVersion` (`version`, `applied`) VALUES (?, ?)",
+            "INSERT INTO SchemaVersion (version, applied) VALUES (?, ?)"
+    ),
+    ADD_IDENTIFIER_PUNISHMENT(
+            "ALTER TABLE `Punishments` ADD COLUMN `identifier` BINARY(16) NULL DEFAULT NULL",
+            "ALTER TABLE Punishments ADD COLUMN identifier BINARY(16)"
+    ),
+    ADD_IDENTIFIER_KIND_PUNISHMENT(
+            "ALTER TABLE `Punishments` ADD COLUMN `identifierKind` TINYINT NULL DEFAULT NULL",
+            "ALTER TABLE Punishments ADD COLUMN identifierKind TINYINT"
+    ),
+    ADD_IDENTIFIER_PUNISHMENT_HISTORY(
+            "ALTER TABLE `PunishmentHistory` ADD COLUMN `identifier` BINARY(16) NULL DEFAULT NULL",
+            "ALTER TABLE PunishmentHistory ADD COLUMN identifier BINARY(16)"
+    ),
+    ADD_IDENTIFIER_KIND_PUNISHMENT_HISTORY(
+            "ALTER TABLE `PunishmentHistory` ADD COLUMN `identifierKind` TINYINT NULL DEFAULT NULL",
+            "ALTER TABLE PunishmentHistory ADD COLUMN identifierKind TINYINT"
+    ),
+    INDEX_PUNISHMENT_IDENTIFIER(
+            "CREATE INDEX `Punishments_identifier` ON `Punishments` (`identifier`)",
+            "CREATE INDEX Punishments_identifier ON Punishments (identifier)"
+    ),
+    INDEX_PUNISHMENT_HISTORY_IDENTIFIER_CALCULATION(
+            "CREATE INDEX `PunishmentHistory_identifier_calculation` ON `PunishmentHistory` (`identifier`, `calculation`)",
+            "CREATE INDEX PunishmentHistory_identifier_calculation ON PunishmentHistory (identifier, calculation)"
+    ),
+    SELECT_UNENCODED_PUNISHMENTS(
+            "SELECT `id`, `uuid` FROM `Punishments` WHERE `identifierKind` IS NULL LIMIT ?",
+            "SELECT id, uuid FROM Punishments WHERE identifierKind IS NULL LIMIT ?"
+    ),
+    SELECT_UNENCODED_PUNISHMENTS_HISTORY(
+            "SELECT `id`, `uuid` FROM `PunishmentHistory` WHERE `identifierKind` IS NULL LIMIT ?",
+            "SELECT id, uuid FROM PunishmentHistory WHERE identifierKind IS NULL LIMIT ?"
+    ),
+    UPDATE_PUNISHMENT_IDENTIFIER(
+            "UPDATE `Punishments` SET `identifier` = ?, `identifierKind` = ? WHERE `id` = ?",
+            "UPDATE Punishments SET identifier = ?, identifierKind = ? WHERE id = ?"
+    ),
+    UPDATE_PUNISHMENT_HISTORY_IDENTIFIER(
+            "UPDATE `PunishmentHistory` SET `identifier` = ?, `identifierKind` = ? WHERE `id` = ?",
+            "UPDATE PunishmentHistory SET identifier = ?, identifierKind = ? WHERE id = ?"
+    ),
     INSERT_PUNISHMENT(
             "INSERT INTO `Punishments` " +
-            "(`name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`) " +
-            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+            "(`name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`, `identifier`, `identifierKind`) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
 
             "INSERT INTO Punishments " +
-            "(name, uuid, reason, operator, punishmentType, start, end, calculation) " +
-            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+            "(name, uuid, reason, operator, punishmentType, start, end, calculation, identifier, identifierKind) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
     ),
     INSERT_PUNISHMENT_HISTORY(
             "INSERT INTO `PunishmentHistory` " +
-            "(`name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`) " +
-            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+            "(`name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`, `identifier`, `identifierKind`) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
 
             "INSERT INTO PunishmentHistory " +
-            "(name, uuid, reason, operator, punishmentType, start, end, calculation) " +
-            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
-    ),
-    SELECT_EXACT_PUNISHMENT(
-            "SELECT * FROM `Punishments` WHERE `uuid` = ? AND `start` = ?",
-            "SELECT * FROM Punishments WHERE uuid = ? AND start = ?"
+            "(name, uuid, reason, operator, punishmentType, start, end, calculation, identifier, identifierKind) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
     ),
     DELETE_PUNISHMENT(
             "DELETE FROM `Punishments` WHERE `id` = ?",
             "DELETE FROM Punishments WHERE id = ?"
     ),
-    DELETE_OLD_PUNISHMENTS(
-            "DELETE FROM `Punishments` WHERE `end` <= ? AND `end` != -1",
-            "DELETE FROM Punishments WHERE end <= ? AND end != -1"
+    SELECT_EXPIRED_PUNISHMENTS(
+            "SELECT * FROM `Punishments` WHERE `end` >= 0 AND `end` <= ? ORDER BY `end` LIMIT ?",
+            "SELECT * FROM Punishments WHERE end >= 0 AND end <= ? ORDER BY end LIMIT ?"
     ),
     SELECT_USER_PUNISHMENTS(
             "SELECT * FROM `Punishments` WHERE `uuid` = ?",
-            "SELECT * FROM Punishments WHERE uuid = ?"
+            "SELECT * FROM Punishments WHERE uuid = ?",
+
+            "SELECT * FROM `Punishments` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?))",
+            "SELECT * FROM Punishments WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?))"
+    ),
+    SELECT_USER_PUNISHMENTS_BATCH(
+            "SELECT * FROM `Punishments` WHERE `uuid` IN (" + parameterList(SQLQuery.BATCH_SIZE) + ")",
+            "SELECT * FROM Punishments WHERE uuid IN (" + parameterList(SQLQuery.BATCH_SIZE) + ")",
+
+            "SELECT * FROM `Punishments` WHERE (`identifier` IN (" + parameterList(SQLQuery.BATCH_SIZE) + ") " +
+            "OR (`identifierKind` IS NULL AND `uuid` IN (" + parameterList(SQLQuery.BATCH_SIZE) + ")))",
+            "SELECT * FROM Punishments WHERE (identifier IN (" + parameterList(SQLQuery.BATCH_SIZE) + ") " +
+            "OR (identifierKind IS NULL AND uuid IN (" + parameterList(SQLQuery.BATCH_SIZE) + ")))"
     ),
     SELECT_USER_PUNISHMENTS_HISTORY(
             "SELECT * FROM `PunishmentHistory` WHERE `uuid` = ?",
-            "SELECT * FROM PunishmentHistory WHERE uuid = ?"
-    ),
-    SELECT_USER_PUNISHMENTS_WITH_IP(
-            "SELECT * FROM `Punishments` WHERE `uuid` = ? OR `uuid` = ?",
-            "SELECT * FROM Punishments WHERE uuid = ? OR uuid = ?"
-    ),
-    SELECT_USER_PUNISHMENTS_HISTORY_WITH_IP(
-            "SELECT * FROM `PunishmentHistory` WHERE `uuid` = ? OR `uuid` = ?",
-            "SELECT * FROM PunishmentHistory WHERE uuid = ? OR uuid = ?"
+            "SELECT * FROM PunishmentHistory WHERE uuid = ?",
+
+            "SELECT * FROM `PunishmentHistory` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?))",
+            "SELECT * FROM PunishmentHistory WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?))"
     ),
-    SELECT_USER_PUNISHMENTS_HISTORY_BY_CALCULATION(
-            "SELECT * FROM `PunishmentHistory` WHERE `uuid` = ? AND `calculation` = ?",
-            "SELECT * FROM PunishmentHistory WHERE uuid = ? AND calculation = ?"
+    COUNT_USER_PUNISHMENTS_HISTORY_BY_CALCULATION(
+            "SELECT COUNT(*) FROM `PunishmentHistory` WHERE `uuid` = ? AND `calculation` = ?",
+            "SELECT COUNT(*) FROM PunishmentHistory WHERE uuid = ? AND calculation = ?",
+
+            "SELECT COUNT(*) FROM `PunishmentHistory` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?)) " +
+            "AND `calculation` = ?",
+            "SELECT COUNT(*) FROM PunishmentHistory WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?)) " +
+            "AND calculation = ?"
     ),
     UPDATE_PUNISHMENT_REASON(
             "UPDATE `Punishments` SET `reason` = ? WHERE `id` = ?",
             "UPDATE Punishments SET reason = ? WHERE id = ?"
     ),
+    SELECT_ACTIVE_BANS(
+            "SELECT * FROM `Punishments` WHERE `punishmentType` IN ('BAN', 'TEMP_BAN', 'IP_BAN', 'TEMP_IP_BAN') " +
+            "AND (`end` = -1 OR `end` > ?)",
+
+            "SELECT * FROM Punishments WHERE punishmentType IN ('BAN', 'TEMP_BAN', 'IP_BAN', 'TEMP_IP_BAN') " +
+            "AND (end = -1 OR end > ?)"
+    ),
+    WIDEN_UUID_PUNISHMENT(
+            "ALTER TABLE `Punishments` MODIFY `uuid` VARCHAR(45) NULL DEFAULT NULL",
+            "ALTER TABLE Punishments ALTER COLUMN uuid VARCHAR(45)"
+    ),
+    WIDEN_UUID_PUNISHMENT_HISTORY(
+            "ALTER TABLE `PunishmentHistory` MODIFY `uuid` VARCHAR(45) NULL DEFAULT NULL",
+            "ALTER TABLE PunishmentHistory ALTER COLUMN uuid VARCHAR(45)"
+    ),
+    CREATE_TABLE_SUBNET_BANS(
+            "CREATE TABLE IF NOT EXISTS `SubnetBans` (" +
+            "`id` int NOT NULL," +
+            "`network` VARBINARY(16) NOT NULL," +
+            "`prefixLength` TINYINT NOT NULL," +
+            "PRIMARY KEY (`id`))",
+
+            "CREATE TABLE IF NOT EXISTS SubnetBans (" +
+            "id INTEGER PRIMARY KEY," +
+            "network VARBINARY(16) NOT NULL," +
+            "prefixLength TINYINT NOT NULL)"
+    ),
+    INSERT_SUBNET_BAN(
+            "INSERT INTO `SubnetBans` (`id`, `network`, `prefixLength`) VALUES (?, ?, ?)",
+            "INSERT INTO SubnetBans (id, network, prefixLength) VALUES (?, ?, ?)"
+    ),
+    DELETE_SUBNET_BAN(
+            "DELETE FROM `SubnetBans` WHERE `id` = ?",
+            "DELETE FROM SubnetBans WHERE id = ?"
+    ),
+    SELECT_ACTIVE_SUBNET_BANS(
+            "SELECT `Punishments`.*, `SubnetBans`.`network`, `SubnetBans`.`prefixLength` " +
+            "FROM `SubnetBans` JOIN `Punishments` ON `Punishments`.`id` = `SubnetBans`.`id` " +
+            "WHERE `Punishments`.`end` = -1 OR `Punishments`.`end` > ?",
+
+            "SELECT Punishments.*, SubnetBans.network, SubnetBans.prefixLength " +
+            "FROM SubnetBans JOIN Punishments ON Punishments.id = SubnetBans.id " +
+            "WHERE Punishments.end = -1 OR Punishments.end > ?"
+    ),
+    CREATE_TABLE_PUNISHMENT_CHANGES(
+            "CREATE TABLE IF NOT EXISTS `PunishmentChanges` (" +
+            "`seq` int NOT NULL AUTO_INCREMENT," +
+            "`punishment` int NOT NULL," +
+            "`changeType` VARCHAR(8) NOT NULL," +
+            "`target` VARCHAR(45) NULL DEFAULT NULL," +
+            "`changed` BIGINT NOT NULL," +
+            "PRIMARY KEY (`seq`))",
+
+            "CREATE TABLE IF NOT EXISTS PunishmentChanges (" +
+            "seq INTEGER GENERATED BY DEFAULT AS IDENTITY (START WITH 1) PRIMARY KEY," +
+            "punishment INTEGER NOT NULL," +
+            "changeType VARCHAR(8) NOT NULL," +
+            "target VARCHAR(45)," +
+            "changed BIGINT NOT NULL)"
+    ),
+    INDEX_PUNISHMENT_CHANGES_CHANGED(
+            "CREATE INDEX `PunishmentChanges_changed` ON `PunishmentChanges` (`changed`)",
+            "CREATE INDEX PunishmentChanges_changed ON PunishmentChanges (changed)"
+    ),
+    INSERT_PUNISHMENT_CHANGE(
+            "INSERT INTO `PunishmentChanges` (`punishment`, `changeType`, `target`, `changed`) VALUES (?, ?, ?, ?)",
+            "INSERT INTO PunishmentChanges (punishment, changeType, target, changed) VALUES (?, ?, ?, ?)"
+    ),
+    SELECT_LAST_PUNISHMENT_CHANGE(
+            "SELECT MAX(`seq`) FROM `PunishmentChanges`",
+            "SELECT MAX(seq) FROM PunishmentChanges"
+    ),
+    SELECT_PUNISHMENT_CHANGES(
+            "SELECT `PunishmentChanges`.`seq`, `PunishmentChanges`.`punishment`, `PunishmentChanges`.`changeType`, " +
+            "`PunishmentChanges`.`target`, `Punishments`.* FROM `PunishmentChanges` " +
+            "LEFT JOIN `Punishments` ON `Punishments`.`id` = `PunishmentChanges`.`punishment` " +
+            "WHERE `PunishmentChanges`.`seq` > ? ORDER BY `PunishmentChanges`.`seq` LIMIT ?",
+
+            "SELECT PunishmentChanges.seq, PunishmentChanges.punishment, PunishmentChanges.changeType, " +
+            "PunishmentChanges.target, Punishments.* FROM PunishmentChanges " +
+            "LEFT JOIN Punishments ON Punishments.id = PunishmentChanges.punishment " +
+            "WHERE PunishmentChanges.seq > ? ORDER BY PunishmentChanges.seq LIMIT ?"
+    ),
+    DELETE_OLD_PUNISHMENT_CHANGES(
+            "DELETE FROM `PunishmentChanges` WHERE `changed` < ? AND `seq` < ?",
+            "DELETE FROM PunishmentChanges WHERE changed < ? AND seq < ?"
+    ),
     SELECT_PUNISHMENT_BY_ID(
             "SELECT * FROM `Punishments` WHERE `id` = ?",
             "SELECT * FROM Punishments WHERE id = ?"
     ),
+    SELECT_PUNISHMENTS_AFTER(
+            "SELECT * FROM `Punishments` WHERE `id` > ? ORDER BY `id` LIMIT ?",
+            "SELECT * FROM Punishments WHERE id > ? ORDER BY id LIMIT ?"
+    ),
+    INSERT_PUNISHMENT_WITH_ID(
+            "INSERT INTO `Punishments` " +
+            "(`id`, `name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`, `identifier`, `identifierKind`) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+
+            "INSERT INTO Punishments " +
+            "(id, name, uuid, reason, operator, punishmentType, start, end, calculation, identifier, identifierKind) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+    ),
     SELECT_ALL_PUNISHMENTS(
             "SELECT * FROM `Punishments`",
             "SELECT * FROM Punishments"
     ),
-    SELECT_ALL_PUNISHMENTS_HISTORY(
-            "SELECT * FROM `PunishmentHistory`",
-            "SELECT * FROM PunishmentHistory"
+    COUNT_ACTIVE_PUNISHMENTS(
+            "SELECT COUNT(*) FROM `Punishments` WHERE (`end` = -1 OR `end` > ?)",
+            "SELECT COUNT(*) FROM Punishments WHERE (end = -1 OR end > ?)"
+    ),
+    SELECT_ACTIVE_PUNISHMENTS_PAGE(
+            "SELECT * FROM `Punishments` WHERE (`end` = -1 OR `end` > ?) " +
+            "ORDER BY `start` DESC, `id` DESC LIMIT ? OFFSET ?",
+            "SELECT * FROM Punishments WHERE (end = -1 OR end > ?) " +
+            "ORDER BY start DESC, id DESC LIMIT ? OFFSET ?"
+    ),
+    SELECT_ACTIVE_PUNISHMENTS_PAGE_AFTER(
+            "SELECT * FROM `Punishments` WHERE (`end` = -1 OR `end` > ?) " +
+            "AND (`start` < ? OR (`start` = ? AND `id` < ?)) ORDER BY `start` DESC, `id` DESC LIMIT ?",
+            "SELECT * FROM Punishments WHERE (end = -1 OR end > ?) " +
+            "AND (start < ? OR (start = ? AND id < ?)) ORDER BY start DESC, id DESC LIMIT ?"
+    ),
+    COUNT_USER_PUNISHMENTS_HISTORY(
+            "SELECT COUNT(*) FROM `PunishmentHistory` WHERE `uuid` = ?",
+            "SELECT COUNT(*) FROM PunishmentHistory WHERE uuid = ?",
+
+            "SELECT COUNT(*) FROM `PunishmentHistory` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?))",
+            "SELECT COUNT(*) FROM PunishmentHistory WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?))"
+    ),
+    SELECT_USER_PUNISHMENTS_HISTORY_PAGE(
+            "SELECT * FROM `PunishmentHistory` WHERE `uuid` = ? " +
+            "ORDER BY `start` DESC, `id` DESC LIMIT ? OFFSET ?",
+            "SELECT * FROM PunishmentHistory WHERE uuid = ? " +
+            "ORDER BY start DESC, id DESC LIMIT ? OFFSET ?",
+
+            "SELECT * FROM `PunishmentHistory` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?)) " +
+            "ORDER BY `start` DESC, `id` DESC LIMIT ? OFFSET ?",
+            "SELECT * FROM PunishmentHistory WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?)) " +
+            "ORDER BY start DESC, id DESC LIMIT ? OFFSET ?"
+    ),
+    SELECT_USER_PUNISHMENTS_HISTORY_PAGE_AFTER(
+            "SELECT * FROM `PunishmentHistory` WHERE `uuid` = ? " +
+            "AND (`start` < ? OR (`start` = ? AND `id` < ?)) ORDER BY `start` DESC, `id` DESC LIMIT ?",
+            "SELECT * FROM PunishmentHistory WHERE uuid = ? " +
+            "AND (start < ? OR (start = ? AND id < ?)) ORDER BY start DESC, id DESC LIMIT ?",
+
+            "SELECT * FROM `PunishmentHistory` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?)) " +
+            "AND (`start` < ? OR (`start` = ? AND `id` < ?)) ORDER BY `start` DESC, `id` DESC LIMIT ?",
+            "SELECT * FROM PunishmentHistory WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?)) " +
+            "AND (start < ? OR (start = ? AND id < ?)) ORDER BY start DESC, id DESC LIMIT ?"
+    ),
+    COUNT_USER_WARNS(
+            "SELECT COUNT(*) FROM `Punishments` WHERE `uuid` = ? " +
+            "AND `punishmentType` IN ('WARNING', 'TEMP_WARNING') AND (`end` = -1 OR `end` > ?)",
+            "SELECT COUNT(*) FROM Punishments WHERE uuid = ? " +
+            "AND punishmentType IN ('WARNING', 'TEMP_WARNING') AND (end = -1 OR end > ?)",
+
+            "SELECT COUNT(*) FROM `Punishments` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?)) " +
+            "AND `punishmentType` IN ('WARNING', 'TEMP_WARNING') AND (`end` = -1 OR `end` > ?)",
+            "SELECT COUNT(*) FROM Punishments WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?)) " +
+            "AND punishmentType IN ('WARNING', 'TEMP_WARNING') AND (end = -1 OR end > ?)"
     ),
-    SELECT_ALL_PUNISHMENTS_LIMIT(
-            "SELECT * FROM `Punishments` ORDER BY `start` DESC LIMIT ?",
-            "SELECT * FROM Punishments ORDER BY start DESC LIMIT ?"
+    SELECT_USER_WARNS_PAGE(
+            "SELECT * FROM `Punishments` WHERE `uuid` = ? " +
+            "AND `punishmentType` IN ('WARNING', 'TEMP_WARNING') AND (`end` = -1 OR `end` > ?) " +
+            "ORDER BY `start` DESC, `id` DESC LIMIT ? OFFSET ?",
+            "SELECT * FROM Punishments WHERE uuid = ? " +
+            "AND punishmentType IN ('WARNING', 'TEMP_WARNING') AND (end = -1 OR end > ?) " +
+            "ORDER BY start DESC, id DESC LIMIT ? OFFSET ?",
+
+            "SELECT * FROM `Punishments` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?)) " +
+            "AND `punishmentType` IN ('WARNING', 'TEMP_WARNING') AND (`end` = -1 OR `end` > ?) " +
+            "ORDER BY `start` DESC, `id` DESC LIMIT ? OFFSET ?",
+            "SELECT * FROM Punishments WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?)) " +
+            "AND punishmentType IN ('WARNING', 'TEMP_WARNING') AND (end = -1 OR end > ?) " +
+            "ORDER BY start DESC, id DESC LIMIT ? OFFSET ?"
     ),
-    SELECT_ALL_PUNISHMENTS_HISTORY_LIMIT(
-            "SELECT * FROM `PunishmentHistory` ORDER BY `start` DESC LIMIT ?",
-            "SELECT * FROM PunishmentHistory ORDER BY start DESC LIMIT ?"
+    SELECT_USER_WARNS_PAGE_AFTER(
+            "SELECT * FROM `Punishments` WHERE `uuid` = ? " +
+            "AND `punishmentType` IN ('WARNING', 'TEMP_WARNING') AND (`end` = -1 OR `end` > ?) " +
+            "AND (`start` < ? OR (`start` = ? AND `id` < ?)) ORDER BY `start` DESC, `id` DESC LIMIT ?",
+            "SELECT * FROM Punishments WHERE uuid = ? " +
+            "AND punishmentType IN ('WARNING', 'TEMP_WARNING') AND (end = -1 OR end > ?) " +
+            "AND (start < ? OR (start = ? AND id < ?)) ORDER BY start DESC, id DESC LIMIT ?",
+
+            "SELECT * FROM `Punishments` WHERE (`identifier` = ? OR (`identifierKind` IS NULL AND `uuid` = ?)) " +
+            "AND `punishmentType` IN ('WARNING', 'TEMP_WARNING') AND (`end` = -1 OR `end` > ?) " +
+            "AND (`start` < ? OR (`start` = ? AND `id` < ?)) ORDER BY `start` DESC, `id` DESC LIMIT ?",
+            "SELECT * FROM Punishments WHERE (identifier = ? OR (identifierKind IS NULL AND uuid = ?)) " +
+            "AND punishmentType IN ('WARNING', 'TEMP_WARNING') AND (end = -1 OR end > ?) " +
+            "AND (start < ? OR (start = ? AND id < ?)) ORDER BY start DESC, id DESC LIMIT ?"
     );
 
+    /**
+     * Amount of parameters of the batch queries
+     */
+    public static final int BATCH_SIZE = 100;
+
     private String mysql;
     private String hsqldb;
+    /**
+     * Variant looking up the identifier by its binary column, null if there is none.
+     * It takes the identifiers in their binary and then again in their text form, for rows written by
+     * older versions that have no binary identifier. The other parameters follow as usual.
+     */
+    private String compactMysql;
+    private String compactHsqldb;
 
     SQLQuery(String mysql, String hsqldb) {
+        this(mysql, hsqldb, null, null);
+    }
+
+    SQLQuery(String mysql, String hsqldb, String compactMysql, String compactHsqldb) {
         this.mysql = mysql;
         this.hsqldb = hsqldb;
+        this.compactMysql = compactMysql;
+        this.compactHsqldb = compactHsqldb;
+    }
+
+    private static String parameterList(int amount) {
+        StringBuilder list = new StringBuilder("?");
+        for (int i = 1; i < amount; i++) {
+            list.append(", ?");
+        }
+        return list.toString();
     }
 }
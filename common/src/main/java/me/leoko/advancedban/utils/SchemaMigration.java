@@ -0,0 +1,37 @@
+package me.leoko.advancedban.utils;
+
+import lombok.Getter;
+
+/**
+ * Ordered changes to the database schema on top of the CREATE_TABLE queries.
+ * Every migration is applied exactly once and recorded in the SchemaVersion table,
+ * its version is derived from the declaration order so new migrations must only be appended.
+ * Queries without a statement for the current dialect are skipped.
+ */
+public enum SchemaMigration {
+    FIX_UUID_COLUMNS(SQLQuery.FIX_TABLE_PUNISHMENT, SQLQuery.FIX_TABLE_PUNISHMENT_HISTORY),
+    FIX_TIMESTAMP_COLUMNS(SQLQuery.FIX_TIMESTAMPS_PUNISHMENT, SQLQuery.FIX_TIMESTAMPS_PUNISHMENT_HISTORY),
+    INDEX_PUNISHMENT_UUID(SQLQuery.INDEX_PUNISHMENT_UUID),
+    INDEX_PUNISHMENT_START(SQLQuery.INDEX_PUNISHMENT_START),
+    INDEX_PUNISHMENT_END(SQLQuery.INDEX_PUNISHMENT_END),
+    INDEX_PUNISHMENT_HISTORY_UUID_CALCULATION(SQLQuery.INDEX_PUNISHMENT_HISTORY_UUID_CALCULATION),
+    INDEX_PUNISHMENT_HISTORY_START(SQLQuery.INDEX_PUNISHMENT_HISTORY_START),
+    FIX_IP_IDENTIFIERS(SQLQuery.FIX_IP_IDENTIFIERS_PUNISHMENT, SQLQuery.FIX_IP_IDENTIFIERS_PUNISHMENT_HISTORY),
+    ADD_COMPACT_IDENTIFIERS(SQLQuery.ADD_IDENTIFIER_PUNISHMENT, SQLQuery.ADD_IDENTIFIER_KIND_PUNISHMENT,
+            SQLQuery.ADD_IDENTIFIER_PUNISHMENT_HISTORY, SQLQuery.ADD_IDENTIFIER_KIND_PUNISHMENT_HISTORY),
+    INDEX_PUNISHMENT_IDENTIFIER(SQLQuery.INDEX_PUNISHMENT_IDENTIFIER),
+    INDEX_PUNISHMENT_HISTORY_IDENTIFIER_CALCULATION(SQLQuery.INDEX_PUNISHMENT_HISTORY_IDENTIFIER_CALCULATION),
+    ADD_SUBNET_BANS(SQLQuery.WIDEN_UUID_PUNISHMENT, SQLQuery.WIDEN_UUID_PUNISHMENT_HISTORY, SQLQuery.CREATE_TABLE_SUBNET_BANS),
+    ADD_PUNISHMENT_CHANGES(SQLQuery.CREATE_TABLE_PUNISHMENT_CHANGES, SQLQuery.INDEX_PUNISHMENT_CHANGES_CHANGED);
+
+    @Getter
+    private final SQLQuery[] queries;
+
+    SchemaMigration(SQLQuery... queries) {
+        this.queries = queries;
+    }
+
+    public int getVersion() {
+        return ordinal() + 1;
+    }
+}
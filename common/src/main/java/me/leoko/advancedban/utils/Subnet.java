@@ -0,0 +1,91 @@
+package me.leoko.advancedban.utils;
+
+import lombok.EqualsAndHashCode;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * An IPv4 or IPv6 network in CIDR notation, e.g. 1.2.3.0/24.
+ * Bits of the address beyond the prefix are always cleared.
+ */
+@EqualsAndHashCode
+public final class Subnet {
+    private final byte[] network;
+    private final int prefixLength;
+
+    private Subnet(byte[] network, int prefixLength) {
+        this.network = network;
+        this.prefixLength = prefixLength;
+        for (int i = 0; i < network.length * 8; i++) {
+            if (i >= prefixLength) {
+                network[i / 8] &= (byte) ~(0x80 >>> (i % 8));
+            }
+        }
+    }
+
+    public static Subnet of(InetAddress address, int prefixLength) {
+        byte[] bytes = address.getAddress();
+        if (prefixLength < 0 || prefixLength > bytes.length * 8) {
+            throw new IllegalArgumentException("Invalid prefix length " + prefixLength + " for " + address.getHostAddress());
+        }
+        return new Subnet(bytes, prefixLength);
+    }
+
+    /**
+     * @return the subnet or null if the text is not an IP address literal followed by a valid prefix length
+     */
+    public static Subnet parse(String text) {
+        int slash = text.indexOf('/');
+        if (slash <= 0 || slash == text.length() - 1 || text.length() - slash > 4) {
+            return null;
+        }
+        IpKey network = IpKey.parse(text, 0, slash);
+        if (network == null) {
+            return null;
+        }
+        int prefixLength = 0;
+        for (int i = slash + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            prefixLength = prefixLength * 10 + (c - '0');
+        }
+        return prefixLength > (network.isIPv4() ? 32 : 128) ? null : of(network.toInetAddress(), prefixLength);
+    }
+
+    public InetAddress getNetwork() {
+        try {
+            return InetAddress.getByAddress(network);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    public boolean isIPv4() {
+        return network.length == 4;
+    }
+
+    public boolean contains(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length != network.length) {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++) {
+            if (((bytes[i / 8] ^ network[i / 8]) & (0x80 >>> (i % 8))) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return getNetwork().getHostAddress() + "/" + prefixLength;
+    }
+}
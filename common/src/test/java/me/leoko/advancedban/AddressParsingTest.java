@@ -0,0 +1,108 @@
+package me.leoko.advancedban;
+
+import me.leoko.advancedban.commands.CommandUtils;
+import me.leoko.advancedban.utils.IpKey;
+import me.leoko.advancedban.utils.Subnet;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AddressParsingTest {
+
+    @Test
+    public void shouldParseIPv4() throws UnknownHostException {
+        IpKey key = IpKey.parse("192.168.0.1");
+        assertNotNull(key);
+        assertTrue(key.isIPv4());
+        assertEquals(InetAddress.getByName("192.168.0.1"), key.toInetAddress());
+        assertEquals("192.168.0.1", key.toString());
+        assertEquals(IpKey.of(InetAddress.getByName("0.0.0.0")), IpKey.parse("0.0.0.0"));
+        assertEquals(IpKey.of(InetAddress.getByName("255.255.255.255")), IpKey.parse("255.255.255.255"));
+    }
+
+    @Test
+    public void shouldRejectInvalidIPv4() {
+        for (String text : new String[]{"", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", "1.2.3.4.", ".1.2.3",
+                "1.2.3.a", "01234.1.1.1", "example.com", "1.2.3.4 "}) {
+            assertNull(IpKey.parse(text), "Should not be an address: " + text);
+        }
+    }
+
+    @Test
+    public void shouldParseCompressedIPv6() throws UnknownHostException {
+        for (String text : new String[]{"::", "::1", "1::", "2001:db8::1", "2001:db8:0:0:1::1", "fe80::1:2:3:4:5",
+                "1:2:3:4:5:6:7:8", "1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8", "2001:DB8::ABCD"}) {
+            IpKey key = IpKey.parse(text);
+            assertNotNull(key, "Should be an address: " + text);
+            assertEquals(InetAddress.getByName(text), key.toInetAddress(), text);
+            assertEquals(InetAddress.getByName(text).getHostAddress(), key.toString(), text);
+        }
+    }
+
+    @Test
+    public void shouldParseEmbeddedIPv4() throws UnknownHostException {
+        IpKey mapped = IpKey.parse("::ffff:1.2.3.4");
+        assertNotNull(mapped);
+        assertTrue(mapped.isIPv4(), "IPv4-mapped addresses should be treated as IPv4");
+        assertEquals(IpKey.parse("1.2.3.4"), mapped);
+
+        IpKey embedded = IpKey.parse("64:ff9b::192.0.2.33");
+        assertNotNull(embedded);
+        assertFalse(embedded.isIPv4());
+        assertEquals(InetAddress.getByName("64:ff9b::c000:221"), embedded.toInetAddress());
+        assertEquals(IpKey.parse("1:2:3:4:5:6:7:8"), IpKey.parse("1:2:3:4:5:6:0.7.0.8"));
+    }
+
+    @Test
+    public void shouldRejectInvalidIPv6() {
+        for (String text : new String[]{":", ":::", "1:::2", "1::2::3", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9",
+                "12345::", "g::1", "1:2:3:4:5:6:7:8::", "::1.2.3", "::1.2.3.4:5", "1:", ":1"}) {
+            assertNull(IpKey.parse(text), "Should not be an address: " + text);
+        }
+    }
+
+    @Test
+    public void shouldParseSubnets() {
+        Subnet subnet = Subnet.parse("10.1.2.3/16");
+        assertNotNull(subnet);
+        assertEquals("10.1.0.0/16", subnet.toString(), "Bits beyond the prefix should be cleared");
+        assertEquals(subnet, Subnet.parse("10.1.255.255/16"));
+        assertEquals("0.0.0.0/0", String.valueOf(Subnet.parse("1.2.3.4/0")));
+        assertEquals("2001:db8:0:0:0:0:0:0/32", String.valueOf(Subnet.parse("2001:db8:ffff::1/32")));
+
+        for (String text : new String[]{"1.2.3.4/33", "1.2.3.4/", "/8", "1.2.3.4/-1", "1.2.3.4/8a", "::/129",
+                "example.com/8", "1.2.3.4/0008"}) {
+            assertNull(Subnet.parse(text), "Should not be a subnet: " + text);
+        }
+    }
+
+    @Test
+    public void shouldMatchAddressesOfSubnet() throws UnknownHostException {
+        Subnet subnet = Subnet.parse("192.168.4.0/22");
+        assertNotNull(subnet);
+        assertTrue(subnet.contains(InetAddress.getByName("192.168.4.0")));
+        assertTrue(subnet.contains(InetAddress.getByName("192.168.7.255")));
+        assertFalse(subnet.contains(InetAddress.getByName("192.168.8.0")));
+        assertFalse(subnet.contains(InetAddress.getByName("::c0a8:400")), "IPv6 addresses are never part of an IPv4 subnet");
+
+        Subnet ipv6 = Subnet.parse("2001:db8::/127");
+        assertNotNull(ipv6);
+        assertTrue(ipv6.contains(InetAddress.getByName("2001:db8::1")));
+        assertFalse(ipv6.contains(InetAddress.getByName("2001:db8::2")));
+    }
+
+    @Test
+    public void shouldParseCommandTargets() throws UnknownHostException {
+        assertEquals(InetAddress.getByName("1.2.3.4"), CommandUtils.parseAddress("1.2.3.4"));
+        assertEquals(InetAddress.getByName("2001:db8::1"), CommandUtils.parseAddress("2001:db8::1"));
+        assertEquals(Subnet.parse("1.2.0.0/16"), CommandUtils.parseAddress("1.2.3.4/16"));
+
+        // Only plain literals are addresses, everything else is treated as a player name
+        for (String text : new String[]{"Notch", "[::1]", "[2001:db8::1]:25565", "1.2.3.4:25565", "localhost"}) {
+            assertNull(CommandUtils.parseAddress(text), "Should not be an address: " + text);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package me.leoko.advancedban;
+
+import me.leoko.advancedban.manager.DatabaseManager;
+import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.punishment.PunishmentManager;
+import me.leoko.advancedban.punishment.PunishmentType;
+import me.leoko.advancedban.utils.IdentifierCodec;
+import me.leoko.advancedban.utils.SQLQuery;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeLogTest {
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        TestAdvancedBan.enableShared();
+        PunishmentManager.getInstance().applyChanges();
+    }
+
+    @Test
+    public void shouldSeeBanOfOtherServerOnNextLoad() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        InetAddress address = InetAddress.getByName("10.1.2.3");
+        PunishmentManager manager = PunishmentManager.getInstance();
+        assertFalse(manager.getBan(manager.load(uuid, "Remote", address)).isPresent(), "Player should not be banned yet");
+        assertTrue(manager.getPunishments(uuid, PunishmentType.BAN, true).isEmpty(), "Player should not be banned yet");
+
+        writeRemoteBan(uuid);
+        assertEquals(1, manager.applyChanges(), "The ban of the other server should have been read");
+
+        assertTrue(manager.getBan(manager.load(uuid, "Remote", address)).isPresent(), "The cached load should have been dropped");
+        assertEquals(1, manager.getPunishments(uuid, PunishmentType.BAN, true).size(), "The offline cache should have been dropped");
+    }
+
+    // Written like another server sharing the database would, so it is not known to be an own change
+    private static void writeRemoteBan(UUID uuid) {
+        long now = TimeManager.getTime();
+        DatabaseManager.getInstance().transaction(connection -> {
+            int id = DatabaseManager.getInstance().executeInsert(connection, SQLQuery.INSERT_PUNISHMENT, "Remote", uuid,
+                    "cheating", "Console", PunishmentType.BAN.name(), now, -1L, null, IdentifierCodec.encode(uuid), IdentifierCodec.getKind(uuid));
+            return DatabaseManager.getInstance().executeInsert(connection, SQLQuery.INSERT_PUNISHMENT_CHANGE, id, "ADD", uuid, now);
+        }).orElseThrow(() -> new AssertionError("Writing the ban failed"));
+    }
+}
@@ -0,0 +1,181 @@
+package me.leoko.advancedban;
+
+import me.leoko.advancedban.configuration.MySQLConfiguration;
+import me.leoko.advancedban.utils.ConnectionPool;
+import me.leoko.advancedban.utils.PooledConnection;
+import me.leoko.advancedban.utils.SQLQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+    private final List<Connection> opened = new ArrayList<>();
+    private final List<ConnectionPool> pools = new ArrayList<>();
+    private int failAfter = Integer.MAX_VALUE;
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        // The pool logs through the plugin
+        TestAdvancedBan.enableShared();
+    }
+
+    @AfterEach
+    public void close() {
+        pools.forEach(ConnectionPool::close);
+    }
+
+    @Test
+    public void shouldOpenMinimumSizeUpFront() throws Exception {
+        ConnectionPool pool = pool("MinSize: 3");
+        assertEquals(3, opened.size());
+        assertEquals(3, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    public void shouldReuseReturnedConnections() throws Exception {
+        ConnectionPool pool = pool("MinSize: 2");
+        Connection first;
+        try (PooledConnection connection = pool.borrow()) {
+            first = connection.getConnection();
+            assertEquals(1, pool.getActiveCount());
+            assertEquals(1, pool.getIdleCount());
+        }
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(2, pool.getIdleCount());
+
+        try (PooledConnection connection = pool.borrow()) {
+            assertSame(first, connection.getConnection(), "The most recently used connection should be handed out first");
+        }
+        assertEquals(2, opened.size(), "No connection should have been opened on demand");
+    }
+
+    @Test
+    public void shouldTimeOutWhenExhausted() throws Exception {
+        ConnectionPool pool = pool("MinSize: 1\nMaxSize: 2\nConnectionTimeout: 100");
+        PooledConnection first = pool.borrow();
+        PooledConnection second = pool.borrow();
+        assertEquals(2, pool.getActiveCount());
+        assertThrows(SQLTimeoutException.class, pool::borrow);
+
+        second.close();
+        try (PooledConnection connection = pool.borrow()) {
+            assertSame(second.getConnection(), connection.getConnection());
+        }
+        first.close();
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void shouldIgnoreConnectionsReturnedTwice() throws Exception {
+        ConnectionPool pool = pool("MinSize: 1\nMaxSize: 1\nConnectionTimeout: 100");
+        PooledConnection connection = pool.borrow();
+        connection.close();
+        connection.close();
+        assertEquals(1, pool.getIdleCount());
+
+        PooledConnection again = pool.borrow();
+        assertThrows(SQLTimeoutException.class, pool::borrow, "Returning twice should not hand out a second permit");
+        again.close();
+    }
+
+    @Test
+    public void shouldReplaceBrokenIdleConnections() throws Exception {
+        ConnectionPool pool = pool("MinSize: 1\nValidationThreshold: 0");
+        Connection broken;
+        try (PooledConnection connection = pool.borrow()) {
+            broken = connection.getConnection();
+        }
+        broken.close();
+
+        try (PooledConnection connection = pool.borrow()) {
+            assertNotSame(broken, connection.getConnection());
+            assertTrue(connection.getConnection().isValid(1));
+        }
+    }
+
+    @Test
+    public void shouldValidateInvalidatedConnections() throws Exception {
+        ConnectionPool pool = pool("MinSize: 1\nValidationThreshold: 60000");
+        Connection broken;
+        try (PooledConnection connection = pool.borrow()) {
+            broken = connection.getConnection();
+        }
+        broken.close();
+        try (PooledConnection connection = pool.borrow()) {
+            assertSame(broken, connection.getConnection(), "Recently used connections should not be validated");
+            connection.invalidate(SQLQuery.SELECT_SCHEMA_VERSION);
+        }
+
+        try (PooledConnection connection = pool.borrow()) {
+            assertNotSame(broken, connection.getConnection(), "A connection whose statement failed should be validated");
+        }
+    }
+
+    @Test
+    public void shouldEvictIdleConnectionsAboveMinimum() throws Exception {
+        ConnectionPool pool = pool("MinSize: 1\nIdleTimeout: 0");
+        PooledConnection first = pool.borrow();
+        PooledConnection second = pool.borrow();
+        first.close();
+        second.close();
+        assertEquals(2, pool.getIdleCount());
+
+        Thread.sleep(5);
+        pool.maintain();
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, opened.stream().filter(this::isOpen).count());
+    }
+
+    @Test
+    public void shouldCloseOpenedConnectionsIfFillingFails() {
+        failAfter = 2;
+        assertThrows(SQLException.class, () -> pool("MinSize: 3"));
+        assertEquals(2, opened.size());
+        assertEquals(0, opened.stream().filter(this::isOpen).count(), "Connections opened before the failure should be closed");
+    }
+
+    @Test
+    public void shouldRefuseBorrowingAfterClose() throws Exception {
+        ConnectionPool pool = pool("MinSize: 2");
+        PooledConnection borrowed = pool.borrow();
+        pool.close();
+        assertThrows(SQLException.class, pool::borrow);
+
+        borrowed.close();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, opened.stream().filter(this::isOpen).count());
+    }
+
+    private ConnectionPool pool(String settings) throws Exception {
+        MySQLConfiguration.Pool config = AdvancedBan.YAML_MAPPER.readValue(settings, MySQLConfiguration.Pool.class);
+        ConnectionPool pool = new ConnectionPool(() -> {
+            if (opened.size() >= failAfter) {
+                throw new SQLException("Connection refused");
+            }
+            Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:pooltest", "SA", "");
+            opened.add(connection);
+            return connection;
+        }, config);
+        pools.add(pool);
+        return pool;
+    }
+
+    private boolean isOpen(Connection connection) {
+        try {
+            return !connection.isClosed();
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+}
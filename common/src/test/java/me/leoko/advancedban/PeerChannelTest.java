@@ -0,0 +1,169 @@
+package me.leoko.advancedban;
+
+import me.leoko.advancedban.utils.PeerChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PeerChannelTest {
+    private static final byte[] SECRET = "secret".getBytes(StandardCharsets.UTF_8);
+
+    private final List<PeerChannel> channels = new ArrayList<>();
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        // The channel logs through the plugin
+        TestAdvancedBan.enableShared();
+    }
+
+    @AfterEach
+    public void close() {
+        channels.forEach(PeerChannel::close);
+    }
+
+    @Test
+    public void shouldDeliverMessagesToAllPeersInOrder() throws Exception {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        PeerChannel receiverA = start(0, Collections.emptyList(), SECRET, first);
+        PeerChannel receiverB = start(0, Collections.emptyList(), SECRET, second);
+        PeerChannel sender = start(0, Arrays.asList(local(receiverA.getPort()), local(receiverB.getPort())), SECRET, new RecordingListener());
+
+        for (int i = 0; i < 100; i++) {
+            sender.send(String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+        }
+        for (RecordingListener listener : Arrays.asList(first, second)) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(String.valueOf(i), listener.next(), "Messages should arrive in the order they were sent");
+            }
+        }
+        assertEquals(0, first.missed.get() + second.missed.get(), "No message should have been missed");
+    }
+
+    @Test
+    public void shouldDropMessagesWithWrongSecret() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        PeerChannel receiver = start(0, Collections.emptyList(), SECRET, listener);
+        PeerChannel sender = start(0, Collections.singletonList(local(receiver.getPort())),
+                "other".getBytes(StandardCharsets.UTF_8), new RecordingListener());
+
+        sender.send("forged".getBytes(StandardCharsets.UTF_8));
+        assertNull(listener.messages.poll(1, TimeUnit.SECONDS), "Messages signed with another secret should be dropped");
+    }
+
+    @Test
+    public void shouldReconnectAfterPeerRestart() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        PeerChannel receiver = start(0, Collections.emptyList(), SECRET, listener);
+        int port = receiver.getPort();
+        PeerChannel sender = start(0, Collections.singletonList(local(port)), SECRET, new RecordingListener());
+
+        sender.send("before".getBytes(StandardCharsets.UTF_8));
+        assertEquals("before", listener.next());
+
+        receiver.close();
+        RecordingListener restarted = new RecordingListener();
+        start(port, Collections.emptyList(), SECRET, restarted);
+        // Whatever is sent before the sender notices the restart is lost, like a real outage
+        String message = null;
+        for (int i = 0; i < 100 && message == null; i++) {
+            sender.send("after".getBytes(StandardCharsets.UTF_8));
+            message = restarted.messages.poll(100, TimeUnit.MILLISECONDS);
+        }
+        assertEquals("after", message, "Messages should be delivered once the peer is back");
+    }
+
+    @Test
+    public void shouldReportMissedMessages() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        PeerChannel receiver = start(0, Collections.emptyList(), SECRET, listener);
+
+        try (Socket socket = new Socket("127.0.0.1", receiver.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            writeFrame(out, 0, 5, "first");
+            assertEquals("first", listener.next());
+            assertEquals(0, listener.missed.get(), "The first message of a server can not be checked");
+
+            writeFrame(out, 0, 6, "second");
+            assertEquals("second", listener.next());
+            writeFrame(out, 1, 6, "");
+            writeFrame(out, 0, 5, "replayed");
+            writeFrame(out, 0, 8, "third");
+            assertEquals("third", listener.next());
+            assertEquals(1, listener.missed.get(), "The message numbered 7 should have been missed");
+
+            writeFrame(out, 1, 9, "");
+            writeFrame(out, 0, 10, "fourth");
+            assertEquals("fourth", listener.next());
+            assertEquals(2, listener.missed.get(), "The ping should have shown that message 9 was missed");
+        }
+    }
+
+    // Written like PeerChannel writes its frames
+    private static void writeFrame(DataOutputStream out, int type, long seq, String payload) throws Exception {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(content);
+        frame.writeByte(type);
+        frame.writeLong(42);
+        frame.writeLong(seq);
+        frame.write(payload.getBytes(StandardCharsets.UTF_8));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+        byte[] tag = mac.doFinal(content.toByteArray());
+        frame.write(tag, 0, 16);
+        out.writeInt(content.size());
+        out.write(content.toByteArray());
+        out.flush();
+    }
+
+    private PeerChannel start(int port, List<InetSocketAddress> peers, byte[] secret, PeerChannel.Listener listener) throws IOException {
+        PeerChannel channel = new PeerChannel(local(port), peers, secret, listener);
+        channels.add(channel);
+        channel.start();
+        return channel;
+    }
+
+    private static InetSocketAddress local(int port) {
+        return new InetSocketAddress("127.0.0.1", port);
+    }
+
+    private static class RecordingListener implements PeerChannel.Listener {
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        private final AtomicInteger missed = new AtomicInteger();
+
+        @Override
+        public void onMessage(byte[] payload) {
+            messages.add(new String(payload, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onMissed() {
+            missed.incrementAndGet();
+        }
+
+        private String next() throws InterruptedException {
+            String message = messages.poll(10, TimeUnit.SECONDS);
+            assertNotNull(message, "Message should have arrived");
+            return message;
+        }
+    }
+}
@@ -3,7 +3,10 @@ package me.leoko.advancedban;
 import me.leoko.advancedban.manager.UUIDManager;
 import me.leoko.advancedban.punishment.Punishment;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
@@ -18,6 +21,35 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 public class TestAdvancedBan extends AdvancedBan {
     private Path dataFolder;
 
+    /**
+     * Enables the plugin for tests that share it, as there can only be one instance at a time.
+     * The change log and the offline cache are turned on.
+     */
+    public static AdvancedBan enableShared() throws IOException {
+        if (AdvancedBan.get() == null) {
+            Path dataFolder = Files.createTempDirectory("advancedban");
+            try (InputStream in = AdvancedBan.class.getClassLoader().getResourceAsStream("config.yml")) {
+                assertNotNull(in, "Default config missing");
+                String config = new String(readAll(in), StandardCharsets.UTF_8)
+                        .replace("ChangeLog:\n  Enabled: false", "ChangeLog:\n  Enabled: true")
+                        .replace("OfflineCache:\n  Size: 1000\n  Time: 0", "OfflineCache:\n  Size: 1000\n  Time: 60");
+                Files.write(dataFolder.resolve("config.yml"), config.getBytes(StandardCharsets.UTF_8));
+            }
+            new TestAdvancedBan(dataFolder).onEnable();
+        }
+        return AdvancedBan.get();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
     public TestAdvancedBan(Path dataFolder) throws IOException {
         super(UUIDManager.FetcherMode.MIXED, true);
         this.dataFolder = dataFolder;
@@ -0,0 +1,230 @@
+package me.leoko.advancedban.manager;
+
+import me.leoko.advancedban.TestAdvancedBan;
+import me.leoko.advancedban.punishment.PunishmentType;
+import me.leoko.advancedban.utils.IdentifierCodec;
+import me.leoko.advancedban.utils.SQLQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The HSQLDB database of the tests stands in for MySQL. Rows written while the mirror is detached
+ * are written like another server sharing the database would.
+ */
+public class PunishmentMirrorTest {
+    private final AtomicLong clock = new AtomicLong(1);
+    private PunishmentMirror mirror;
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        TestAdvancedBan.enableShared();
+    }
+
+    @BeforeEach
+    public void attach() throws SQLException {
+        mirror = new PunishmentMirror(60_000, clock::get);
+        DatabaseManager.getInstance().setMirror(mirror);
+        mirror.sync(true);
+    }
+
+    @AfterEach
+    public void detach() {
+        DatabaseManager.getInstance().setMirror(null);
+        mirror.close();
+    }
+
+    @Test
+    public void shouldCopyTheWholeTable() throws SQLException {
+        DatabaseManager.getInstance().setMirror(null);
+        mirror.close();
+        int id = insert(UUID.randomUUID(), "Copied");
+        mirror = new PunishmentMirror(60_000, clock::get);
+        assertFalse(mirror.serves(SQLQuery.COUNT_ACTIVE_PUNISHMENTS), "Nothing should be served before the table is copied");
+
+        mirror.sync(false);
+        assertTrue(mirror.serves(SQLQuery.COUNT_ACTIVE_PUNISHMENTS));
+        assertFalse(mirror.serves(SQLQuery.SELECT_USER_PUNISHMENTS), "Lookups enforcing punishments should be read from MySQL");
+        assertEquals(Optional.of("Copied"), copied(id));
+        assertEquals(count(true), count(false));
+    }
+
+    @Test
+    public void shouldReplayOwnChanges() {
+        int id = insert(UUID.randomUUID(), "Own");
+        assertEquals(Optional.of("Own"), copied(id), "The insert should have been replayed");
+
+        DatabaseManager.getInstance().executeStatement(SQLQuery.UPDATE_PUNISHMENT_REASON, "Changed", id);
+        assertEquals(Optional.of("Changed"), copied(id));
+        DatabaseManager.getInstance().executeStatement(SQLQuery.DELETE_PUNISHMENT, id);
+        assertFalse(copied(id).isPresent());
+    }
+
+    @Test
+    public void shouldCopyPunishmentsOfOtherServers() {
+        int id = remotely(() -> insert(UUID.randomUUID(), "Remote"));
+        assertFalse(copied(id).isPresent());
+
+        mirror.sync(false);
+        assertEquals(Optional.of("Remote"), copied(id));
+    }
+
+    @Test
+    public void shouldCopyPunishmentsCommittedAfterLaterOnes() {
+        int[] ids = remotely(this::insertWithGap);
+        mirror.sync(false);
+        assertEquals(Optional.of("Later"), copied(ids[1]), "The punishment after the gap should be copied right away");
+        assertFalse(copied(ids[0]).isPresent());
+
+        remotely(() -> insertLate(ids[0]));
+        mirror.sync(false);
+        assertEquals(Optional.of("Late"), copied(ids[0]), "The late punishment should be copied once it shows up");
+    }
+
+    @Test
+    public void shouldSkipGapsAfterTheTimeout() {
+        int[] ids = remotely(this::insertWithGap);
+        mirror.sync(false);
+        clock.addAndGet(PunishmentMirror.GAP_TIMEOUT);
+        mirror.sync(false);
+        clock.addAndGet(1);
+        mirror.sync(false);
+
+        remotely(() -> insertLate(ids[0]));
+        int next = remotely(() -> insert(UUID.randomUUID(), "Next"));
+        mirror.sync(false);
+        assertFalse(copied(ids[0]).isPresent(), "Ids below a skipped gap should not be polled anymore");
+        assertEquals(Optional.of("Next"), copied(next));
+
+        mirror.sync(true);
+        assertEquals(Optional.of("Late"), copied(ids[0]), "Comparing the whole table should pick it up");
+    }
+
+    @Test
+    public void shouldApplyDifferencesWhenComparingTheTable() {
+        int changed = insert(UUID.randomUUID(), "Before");
+        int removed = insert(UUID.randomUUID(), "Removed");
+        mirror.sync(false);
+        remotely(() -> {
+            DatabaseManager.getInstance().executeStatement(SQLQuery.UPDATE_PUNISHMENT_REASON, "After", changed);
+            DatabaseManager.getInstance().executeStatement(SQLQuery.DELETE_PUNISHMENT, removed);
+            return null;
+        });
+        mirror.sync(false);
+        assertEquals(Optional.of("Before"), copied(changed), "Changes of other servers are not polled");
+        assertTrue(copied(removed).isPresent());
+
+        clock.addAndGet(60_000);
+        mirror.sync(false);
+        assertEquals(Optional.of("After"), copied(changed), "The table should be compared once the interval passed");
+        assertFalse(copied(removed).isPresent());
+        assertEquals(count(true), count(false));
+    }
+
+    @Test
+    public void shouldNotBringBackRemovedPunishments() {
+        int id = insert(UUID.randomUUID(), "Removed");
+        // Removed in MySQL, while a read from just before still has the row
+        mirror.replay(SQLQuery.DELETE_PUNISHMENT, 0, id);
+        mirror.refresh(id);
+        assertFalse(copied(id).isPresent(), "The row read before the removal should not be copied");
+
+        clock.addAndGet(1);
+        mirror.sync(true);
+        mirror.refresh(id);
+        assertEquals(Optional.of("Removed"), copied(id), "Removals should only be remembered until the next comparison");
+        remotely(() -> {
+            DatabaseManager.getInstance().executeStatement(SQLQuery.DELETE_PUNISHMENT, id);
+            return null;
+        });
+    }
+
+    @Test
+    public void shouldAnswerLookupsWhileMySQLFails() throws SQLException {
+        UUID uuid = UUID.randomUUID();
+        insert(uuid, "Enforced");
+        rename("Punishments", "PunishmentsOffline");
+        try {
+            List<String> reasons = DatabaseManager.getInstance().query(SQLQuery.SELECT_USER_PUNISHMENTS, rs -> rs.getString("reason"), uuid);
+            assertEquals(1, reasons.size(), "The lookup should have been answered by the mirror");
+            assertEquals("Enforced", reasons.get(0));
+            assertTrue(DatabaseManager.getInstance().query(SQLQuery.SELECT_PUNISHMENT_BY_ID, rs -> rs.getInt("id"), 1).isEmpty(),
+                    "Other queries should not be answered by the mirror");
+        } finally {
+            rename("PunishmentsOffline", "Punishments");
+        }
+    }
+
+    private <T> T remotely(Supplier<T> write) {
+        DatabaseManager.getInstance().setMirror(null);
+        try {
+            return write.get();
+        } finally {
+            DatabaseManager.getInstance().setMirror(mirror);
+        }
+    }
+
+    private static int insert(UUID uuid, String reason) {
+        return DatabaseManager.getInstance().transaction(connection -> DatabaseManager.getInstance().executeInsert(connection,
+                SQLQuery.INSERT_PUNISHMENT, "name", uuid, reason, "Console", PunishmentType.BAN.name(), 0L, -1L, null,
+                IdentifierCodec.encode(uuid), IdentifierCodec.getKind(uuid))
+        ).orElseThrow(() -> new AssertionError("Writing the punishment failed"));
+    }
+
+    /**
+     * Inserts two punishments and removes the first one again, like an insert that has taken its id
+     * but not committed yet.
+     *
+     * @return the id of the missing punishment and the one after it
+     */
+    private int[] insertWithGap() {
+        int missing = insert(UUID.randomUUID(), "Late");
+        int later = insert(UUID.randomUUID(), "Later");
+        DatabaseManager.getInstance().executeStatement(SQLQuery.DELETE_PUNISHMENT, missing);
+        return new int[]{missing, later};
+    }
+
+    private static Void insertLate(int id) {
+        UUID uuid = UUID.randomUUID();
+        DatabaseManager.getInstance().executeStatement(SQLQuery.INSERT_PUNISHMENT_WITH_ID, id, "name", uuid, "Late",
+                "Console", PunishmentType.BAN.name(), 0L, -1L, null, IdentifierCodec.encode(uuid), IdentifierCodec.getKind(uuid));
+        return null;
+    }
+
+    private Optional<String> copied(int id) {
+        List<String> reasons = new ArrayList<>(1);
+        assertTrue(mirror.stream(SQLQuery.SELECT_PUNISHMENT_BY_ID, rs -> rs.getString("reason"), reasons::add, 0, id));
+        return reasons.stream().findFirst();
+    }
+
+    private int count(boolean fromMirror) {
+        List<Integer> count = new ArrayList<>(1);
+        if (fromMirror) {
+            mirror.stream(SQLQuery.COUNT_ACTIVE_PUNISHMENTS, rs -> rs.getInt(1), count::add, 0, 0L);
+        } else {
+            DatabaseManager.getInstance().streamFromMySQL(SQLQuery.COUNT_ACTIVE_PUNISHMENTS, rs -> rs.getInt(1), count::add, 0L);
+        }
+        return count.get(0);
+    }
+
+    private static void rename(String table, String name) {
+        DatabaseManager.getInstance().transaction(connection -> {
+            try (Statement statement = connection.getConnection().createStatement()) {
+                return statement.executeUpdate("ALTER TABLE " + table + " RENAME TO " + name);
+            }
+        }).orElseThrow(() -> new AssertionError("Renaming " + table + " failed"));
+    }
+}
@@ -0,0 +1,96 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.TestAdvancedBan;
+import me.leoko.advancedban.manager.TimeManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BanIndexTest {
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        TestAdvancedBan.enableShared();
+    }
+
+    @Test
+    public void shouldLoadCurrentBans() {
+        Punishment ban = ban(UUID.randomUUID());
+        BanIndex index = new BanIndex();
+        assertFalse(index.isReady());
+        index.load(PunishmentManager.getInstance()::getPunishmentFromResultSet);
+
+        assertTrue(index.isReady());
+        assertEquals(ban.getId(), index.getBan(ban.getIdentifier()).map(Punishment::getId).orElse(null));
+        assertFalse(index.getBan(UUID.randomUUID()).isPresent());
+        PunishmentManager.getInstance().deletePunishment(ban);
+    }
+
+    @Test
+    public void shouldKeepBansRemovedWhileLoadingRemoved() {
+        PunishmentManager manager = PunishmentManager.getInstance();
+        Punishment removed = ban(UUID.randomUUID());
+        Punishment kept = ban(UUID.randomUUID());
+        BanIndex index = new BanIndex();
+        index.load(rs -> {
+            Punishment read = manager.getPunishmentFromResultSet(rs);
+            // Deleted by another thread right after its row has been read
+            if (read.equals(removed)) {
+                index.remove(removed.getIdentifier(), removed.getId().getAsInt());
+            }
+            return read;
+        });
+
+        assertFalse(index.getBan(removed.getIdentifier()).isPresent(), "The ban removed while loading should not be added back");
+        assertTrue(index.getBan(kept.getIdentifier()).isPresent());
+        manager.deletePunishment(removed);
+        manager.deletePunishment(kept);
+    }
+
+    @Test
+    public void shouldKeepBansAddedWhileLoading() {
+        PunishmentManager manager = PunishmentManager.getInstance();
+        Punishment existing = ban(UUID.randomUUID());
+        Punishment added = new Punishment(UUID.randomUUID(), "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.BAN);
+        BanIndex index = new BanIndex();
+        index.load(rs -> {
+            Punishment read = manager.getPunishmentFromResultSet(rs);
+            if (read.equals(existing) && !added.getId().isPresent()) {
+                // Added by another thread after the query has started
+                manager.addPunishment(added, true);
+                index.add(added);
+            }
+            return read;
+        });
+
+        assertTrue(index.getBan(existing.getIdentifier()).isPresent());
+        assertTrue(index.getBan(added.getIdentifier()).isPresent(), "The ban added while loading should be kept");
+        manager.deletePunishment(existing);
+        manager.deletePunishment(added);
+    }
+
+    @Test
+    public void shouldApplyChangesAfterLoading() {
+        BanIndex index = new BanIndex();
+        index.load(PunishmentManager.getInstance()::getPunishmentFromResultSet);
+        Punishment ban = new Punishment(UUID.randomUUID(), "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.BAN);
+        ban.setId(Integer.MAX_VALUE);
+        index.add(ban);
+        assertTrue(index.getBan(ban.getIdentifier()).isPresent());
+
+        index.remove(ban.getIdentifier(), -5);
+        assertTrue(index.getBan(ban.getIdentifier()).isPresent(), "Only the ban with the id should be removed");
+        index.remove(ban.getIdentifier(), Integer.MAX_VALUE);
+        assertFalse(index.getBan(ban.getIdentifier()).isPresent());
+    }
+
+    private static Punishment ban(UUID uuid) {
+        Punishment ban = new Punishment(uuid, "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.BAN);
+        PunishmentManager.getInstance().addPunishment(ban, true);
+        return ban;
+    }
+}
@@ -0,0 +1,135 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.TestAdvancedBan;
+import me.leoko.advancedban.manager.DatabaseManager;
+import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.utils.SQLQuery;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeLogPollTest {
+    // Ids no punishment has, the changes are read as of removed punishments
+    private static int nextId = 1_000_000;
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        TestAdvancedBan.enableShared();
+    }
+
+    @Test
+    public void shouldReadChangesOfOtherServersInOrder() {
+        ChangeLog log = started(new AtomicLong());
+        int first = change(TimeManager.getTime());
+        int second = change(TimeManager.getTime());
+        assertEquals(ids(first, second), ids(poll(log)));
+        assertTrue(poll(log).isEmpty(), "Changes should only be read once");
+    }
+
+    @Test
+    public void shouldReadChangesCommittedAfterLaterOnes() {
+        ChangeLog log = started(new AtomicLong());
+        int[] late = hiddenChange();
+        int later = late[2];
+        assertEquals(ids(later), ids(poll(log)), "The change after the gap should be read right away");
+
+        commitLate(late);
+        assertEquals(ids(late[1]), ids(poll(log)), "The late change should be read without the one after it");
+
+        int next = change(TimeManager.getTime());
+        assertEquals(ids(next), ids(poll(log)));
+    }
+
+    @Test
+    public void shouldSkipOwnChanges() {
+        ChangeLog log = started(new AtomicLong());
+        int own = nextId++;
+        DatabaseManager.getInstance().transaction(connection -> {
+            log.record(connection, ChangeLog.Type.ADD, own, UUID.randomUUID());
+            return own;
+        }).orElseThrow(() -> new AssertionError("Recording the change failed"));
+        int other = change(TimeManager.getTime());
+        assertEquals(ids(other), ids(poll(log)));
+    }
+
+    @Test
+    public void shouldSkipGapsAfterTheTimeout() {
+        AtomicLong clock = new AtomicLong();
+        ChangeLog log = started(clock);
+        int[] missing = hiddenChange();
+        assertEquals(ids(missing[2]), ids(poll(log)));
+
+        clock.addAndGet(ChangeLog.GAP_TIMEOUT);
+        assertTrue(poll(log).isEmpty(), "The gap should still be waited for");
+        clock.addAndGet(1);
+        assertTrue(poll(log).isEmpty(), "Changes after the gap should not be read again");
+
+        // Rolled back changes never show up, so the gap is not waited for anymore
+        commitLate(missing);
+        int next = change(TimeManager.getTime());
+        assertEquals(ids(next), ids(poll(log)), "Changes showing up after the gap was skipped should be ignored");
+    }
+
+    private static ChangeLog started(AtomicLong clock) {
+        ChangeLog log = new ChangeLog(60_000, clock::get);
+        log.start();
+        return log;
+    }
+
+    private static List<ChangeLog.Change> poll(ChangeLog log) {
+        return log.poll(PunishmentManager.getInstance()::getPunishmentFromResultSet);
+    }
+
+    private static List<Integer> ids(List<ChangeLog.Change> changes) {
+        return changes.stream().map(change -> change.id).collect(Collectors.toList());
+    }
+
+    private static List<Integer> ids(int... ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    // Written like another server sharing the database would
+    private static int change(long changed) {
+        int id = nextId++;
+        DatabaseManager.getInstance().transaction(connection ->
+                DatabaseManager.getInstance().executeInsert(connection, SQLQuery.INSERT_PUNISHMENT_CHANGE, id, "ADD", UUID.randomUUID(), changed)
+        ).orElseThrow(() -> new AssertionError("Writing the change failed"));
+        return id;
+    }
+
+    /**
+     * Writes two changes and removes the first one again, like a transaction that has taken its
+     * sequence number but not committed yet.
+     *
+     * @return the sequence number and id of the hidden change and the id of the one after it
+     */
+    private static int[] hiddenChange() {
+        int hidden = change(0);
+        int seq = DatabaseManager.getInstance().queryFirst(SQLQuery.SELECT_LAST_PUNISHMENT_CHANGE, rs -> rs.getInt(1)).orElse(-1);
+        int later = change(TimeManager.getTime());
+        DatabaseManager.getInstance().executeStatement(SQLQuery.DELETE_OLD_PUNISHMENT_CHANGES, 1L, seq + 1);
+        return new int[]{seq, hidden, later};
+    }
+
+    private static void commitLate(int[] hidden) {
+        DatabaseManager.getInstance().transaction(connection -> {
+            PreparedStatement statement = connection.prepare(SQLQuery.INSERT_PUNISHMENT_CHANGE,
+                    "INSERT INTO PunishmentChanges (seq, punishment, changeType, target, changed) VALUES (?, ?, ?, ?, ?)");
+            statement.setInt(1, hidden[0]);
+            statement.setInt(2, hidden[1]);
+            statement.setString(3, "ADD");
+            statement.setString(4, UUID.randomUUID().toString());
+            statement.setLong(5, TimeManager.getTime());
+            return statement.executeUpdate();
+        }).orElseThrow(() -> new AssertionError("Writing the late change failed"));
+    }
+}
@@ -0,0 +1,101 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.TestAdvancedBan;
+import me.leoko.advancedban.manager.TimeManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpirySchedulerTest {
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        // Punishments end by the time of the plugin
+        TestAdvancedBan.enableShared();
+    }
+
+    @Test
+    public void shouldReturnPunishmentsOnceTheyEnded() throws InterruptedException {
+        ExpiryScheduler scheduler = new ExpiryScheduler();
+        Punishment ending = punishment(1, 20);
+        Punishment later = punishment(2, 60_000);
+        scheduler.schedule(ending);
+        scheduler.schedule(later);
+        scheduler.schedule(permanent(3));
+        assertTrue(scheduler.pollExpired().isEmpty());
+
+        Thread.sleep(50);
+        assertEquals(Collections.singletonList(ending), scheduler.pollExpired());
+        assertTrue(scheduler.pollExpired().isEmpty(), "Expired punishments should only be returned once");
+    }
+
+    @Test
+    public void shouldSkipCancelledPunishments() throws InterruptedException {
+        ExpiryScheduler scheduler = new ExpiryScheduler();
+        Punishment cancelled = punishment(1, 20);
+        Punishment kept = punishment(2, 20);
+        scheduler.schedule(cancelled);
+        scheduler.schedule(kept);
+        scheduler.cancel(Arrays.asList(cancelled, punishment(3, 20)));
+
+        Thread.sleep(50);
+        assertEquals(Collections.singletonList(kept), scheduler.pollExpired());
+    }
+
+    @Test
+    public void shouldScheduleCancelledPunishmentsAgain() throws InterruptedException {
+        ExpiryScheduler scheduler = new ExpiryScheduler();
+        Punishment first = punishment(1, 20);
+        scheduler.schedule(first);
+        scheduler.cancel(Collections.singleton(first));
+
+        // Loaded again, e.g. because the player rejoined
+        Punishment reloaded = copy(first);
+        scheduler.schedule(reloaded);
+        scheduler.cancel(Collections.singleton(reloaded));
+        scheduler.schedule(reloaded);
+
+        Thread.sleep(50);
+        assertEquals(Collections.singletonList(reloaded), scheduler.pollExpired(), "The punishment should expire once as the reloaded one");
+    }
+
+    @Test
+    public void shouldUseTheNewEndOfRescheduledPunishments() throws InterruptedException {
+        ExpiryScheduler scheduler = new ExpiryScheduler();
+        Punishment punishment = punishment(1, 20);
+        scheduler.schedule(punishment);
+        Punishment extended = new Punishment(punishment.getIdentifier(), punishment.getName(), punishment.getOperator(),
+                null, punishment.getStart(), TimeManager.getTime() + 60_000, PunishmentType.TEMP_BAN);
+        extended.setId(1);
+        scheduler.schedule(extended);
+
+        Thread.sleep(50);
+        assertTrue(scheduler.pollExpired().isEmpty(), "The old end should no longer apply");
+    }
+
+    private static Punishment punishment(int id, long duration) {
+        Punishment punishment = new Punishment(UUID.randomUUID(), "name", "operator", null, TimeManager.getTime(),
+                TimeManager.getTime() + duration, PunishmentType.TEMP_BAN);
+        punishment.setId(id);
+        return punishment;
+    }
+
+    private static Punishment permanent(int id) {
+        Punishment punishment = new Punishment(UUID.randomUUID(), "name", "operator", null, TimeManager.getTime(), -1, PunishmentType.BAN);
+        punishment.setId(id);
+        return punishment;
+    }
+
+    private static Punishment copy(Punishment punishment) {
+        Punishment copy = new Punishment(punishment.getIdentifier(), punishment.getName(), punishment.getOperator(),
+                null, punishment.getStart(), punishment.getEnd(), punishment.getType());
+        copy.setId(punishment.getId().getAsInt());
+        return copy;
+    }
+}
@@ -0,0 +1,92 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.TestAdvancedBan;
+import me.leoko.advancedban.manager.DatabaseManager;
+import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.utils.IdentifierCodec;
+import me.leoko.advancedban.utils.SQLQuery;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryWriterTest {
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        TestAdvancedBan.enableShared();
+    }
+
+    @Test
+    public void shouldWriteQueuedEntriesOnFlush() {
+        UUID uuid = UUID.randomUUID();
+        HistoryWriter writer = new HistoryWriter(10);
+        writer.add(punishment(uuid), columns(punishment(uuid), "Queued"));
+        writer.add(punishment(uuid), columns(punishment(uuid), "Queued"));
+        assertEquals(0, written(uuid), "Entries should only be written on flush");
+        assertEquals(2, writer.count(uuid, "test", () -> written(uuid)), "Queued entries should be counted");
+
+        writer.flush();
+        assertEquals(2, written(uuid));
+        assertEquals(2, writer.count(uuid, "test", () -> written(uuid)), "Written entries should not be counted twice");
+    }
+
+    @Test
+    public void shouldRetryFailedEntriesAlone() {
+        UUID uuid = UUID.randomUUID();
+        HistoryWriter writer = new HistoryWriter(10);
+        Punishment punishment = punishment(uuid);
+        // The name does not fit into its column, so writing the entry fails until it is shortened
+        Object[] failing = columns(punishment, "A name that is far too long");
+        writer.add(punishment, failing);
+        writer.flush();
+        assertEquals(0, written(uuid));
+        assertEquals(1, writer.count(uuid, "test", () -> written(uuid)), "The failed entry should still be pending");
+
+        writer.add(punishment, columns(punishment, "Later"));
+        writer.flush();
+        assertEquals(0, written(uuid), "The later entry should not be written with the failing one");
+        assertEquals(2, writer.count(uuid, "test", () -> written(uuid)));
+
+        failing[0] = "Retried";
+        writer.flush();
+        assertEquals(1, written(uuid), "The failed entry should have been retried");
+        writer.flush();
+        assertEquals(2, written(uuid), "The later entry should be written once the failed one is");
+    }
+
+    @Test
+    public void shouldWriteDirectlyWhileFailedEntriesAreRetried() {
+        UUID uuid = UUID.randomUUID();
+        HistoryWriter writer = new HistoryWriter(2);
+        Punishment punishment = punishment(uuid);
+        writer.add(punishment, columns(punishment, "A name that is far too long"));
+        writer.flush();
+
+        writer.add(punishment, columns(punishment, "Queued"));
+        writer.add(punishment, columns(punishment, "Queued"));
+        writer.flush();
+        assertEquals(0, written(uuid), "Entries should stay queued while the failed one is retried");
+
+        writer.add(punishment, columns(punishment, "Direct"));
+        assertEquals(1, written(uuid), "The queue is full, so the entry should have been written directly");
+        assertEquals(4, writer.count(uuid, "test", () -> written(uuid)));
+    }
+
+    private static Punishment punishment(UUID uuid) {
+        return new Punishment(uuid, "name", "Console", "test", TimeManager.getTime(), -1, PunishmentType.KICK);
+    }
+
+    private static Object[] columns(Punishment punishment, String name) {
+        return new Object[]{name, punishment.getIdentifier(), null, punishment.getOperator(), punishment.getType().name(),
+                punishment.getStart(), punishment.getEnd(), punishment.getCalculation(),
+                IdentifierCodec.encode(punishment.getIdentifier()), IdentifierCodec.getKind(punishment.getIdentifier())};
+    }
+
+    private static int written(UUID uuid) {
+        return DatabaseManager.getInstance().count(SQLQuery.COUNT_USER_PUNISHMENTS_HISTORY, uuid);
+    }
+}
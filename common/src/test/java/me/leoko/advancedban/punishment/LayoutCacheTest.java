@@ -0,0 +1,95 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.TestAdvancedBan;
+import me.leoko.advancedban.manager.TimeManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LayoutCacheTest {
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        TestAdvancedBan.enableShared();
+    }
+
+    @Test
+    public void shouldRenderLayoutsOnce() {
+        LayoutCache cache = new LayoutCache();
+        AtomicInteger renders = new AtomicInteger();
+        List<String> layout = cache.get(1, () -> render(renders, "first"));
+        assertSame(layout, cache.get(1, () -> render(renders, "second")));
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void shouldRenderInvalidatedLayoutsAgain() {
+        LayoutCache cache = new LayoutCache();
+        AtomicInteger renders = new AtomicInteger();
+        cache.get(1, () -> render(renders, "first"));
+        List<String> other = cache.get(2, () -> render(renders, "other"));
+
+        cache.invalidate(1);
+        assertEquals(Collections.singletonList("second"), cache.get(1, () -> render(renders, "second")));
+        assertSame(other, cache.get(2, () -> render(renders, "changed")), "Other layouts should stay cached");
+
+        cache.clear();
+        assertEquals(Collections.singletonList("changed"), cache.get(2, () -> render(renders, "changed")));
+    }
+
+    @Test
+    public void shouldNotCacheLayoutsRenderedBeforeAnInvalidation() {
+        LayoutCache cache = new LayoutCache();
+        AtomicInteger renders = new AtomicInteger();
+        List<String> outdated = cache.get(1, () -> {
+            // The reason changes while the old one is rendered
+            cache.invalidate(1);
+            return render(renders, "old");
+        });
+        assertEquals(Collections.singletonList("old"), outdated);
+        assertEquals(Collections.singletonList("new"), cache.get(1, () -> render(renders, "new")));
+    }
+
+    @Test
+    public void shouldRenderTheChangedReason() {
+        PunishmentManager manager = PunishmentManager.getInstance();
+        Punishment ban = new Punishment(UUID.randomUUID(), "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.BAN);
+        ban.setReason("Before the change");
+        manager.addPunishment(ban, true);
+        assertTrue(String.join("\n", manager.getLayout(ban)).contains("Before the change"));
+
+        ban.setReason("After the change");
+        manager.updatePunishment(ban);
+        String layout = String.join("\n", manager.getLayout(ban));
+        assertTrue(layout.contains("After the change"), "The layout should show the new reason");
+        assertFalse(layout.contains("Before the change"));
+        manager.deletePunishment(ban);
+    }
+
+    @Test
+    public void shouldRenderAgainAfterReload() {
+        PunishmentManager manager = PunishmentManager.getInstance();
+        Punishment ban = new Punishment(UUID.randomUUID(), "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.BAN);
+        manager.addPunishment(ban, true);
+        List<String> layout = manager.getLayout(ban);
+        assertSame(layout, manager.getLayout(ban));
+
+        manager.clearLayouts();
+        List<String> reloaded = manager.getLayout(ban);
+        assertNotSame(layout, reloaded, "The layout should have been rendered again");
+        assertEquals(layout, reloaded);
+        manager.deletePunishment(ban);
+    }
+
+    private static List<String> render(AtomicInteger renders, String line) {
+        renders.incrementAndGet();
+        return Collections.singletonList(line);
+    }
+}
@@ -0,0 +1,80 @@
+package me.leoko.advancedban.punishment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PunishmentBucketTest {
+
+    @Test
+    public void shouldKeepHistoriesWithinTheLimit() {
+        PunishmentBucket bucket = new PunishmentBucket();
+        assertNull(bucket.getHistory());
+        int version = bucket.startHistoryLoad();
+        assertTrue(version >= 0);
+        assertEquals(-1, bucket.startHistoryLoad(), "The history should only be loaded once at a time");
+
+        bucket.finishHistoryLoad(version, history(3), 3);
+        assertEquals(3, bucket.getHistory().size());
+        assertEquals(-1, bucket.startHistoryLoad(), "A loaded history should not be loaded again");
+
+        bucket.addHistory(entry());
+        assertNull(bucket.getHistory(), "The history should be dropped once it grows beyond the limit");
+        assertEquals(-1, bucket.startHistoryLoad(), "A history beyond the limit should not be loaded again");
+    }
+
+    @Test
+    public void shouldNotKeepHistoriesBeyondTheLimit() {
+        PunishmentBucket bucket = new PunishmentBucket();
+        // One more than the limit is loaded to tell whether the history is longer
+        bucket.finishHistoryLoad(bucket.startHistoryLoad(), history(4), 3);
+        assertNull(bucket.getHistory());
+        assertEquals(-1, bucket.startHistoryLoad());
+    }
+
+    @Test
+    public void shouldKeepEveryHistoryWithoutLimit() {
+        PunishmentBucket bucket = new PunishmentBucket();
+        bucket.finishHistoryLoad(bucket.startHistoryLoad(), history(100), 0);
+        bucket.addHistory(entry());
+        assertEquals(101, bucket.getHistory().size());
+    }
+
+    @Test
+    public void shouldDropHistoriesChangedWhileLoading() {
+        PunishmentBucket bucket = new PunishmentBucket();
+        int version = bucket.startHistoryLoad();
+        bucket.addHistory(entry());
+        bucket.finishHistoryLoad(version, history(2), 3);
+        assertNull(bucket.getHistory(), "It cannot be told whether the added entry has been loaded");
+        assertTrue(bucket.startHistoryLoad() >= 0, "The history should be loaded again");
+    }
+
+    @Test
+    public void shouldLoadAgainAfterFailure() {
+        PunishmentBucket bucket = new PunishmentBucket();
+        bucket.finishHistoryLoad(bucket.startHistoryLoad(), null, 3);
+        assertNull(bucket.getHistory());
+        int version = bucket.startHistoryLoad();
+        assertTrue(version >= 0);
+        bucket.finishHistoryLoad(version, Collections.emptyList(), 3);
+        assertTrue(bucket.getHistory().isEmpty());
+    }
+
+    private static List<Punishment> history(int size) {
+        List<Punishment> history = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            history.add(entry());
+        }
+        return history;
+    }
+
+    private static Punishment entry() {
+        return new Punishment(UUID.randomUUID(), "name", "Console", null, 0, -1, PunishmentType.KICK);
+    }
+}
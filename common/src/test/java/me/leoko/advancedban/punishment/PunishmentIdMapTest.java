@@ -0,0 +1,114 @@
+package me.leoko.advancedban.punishment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PunishmentIdMapTest {
+
+    @Test
+    public void shouldFindAddedPunishments() {
+        PunishmentIdMap map = new PunishmentIdMap();
+        Punishment first = punishment(1);
+        assertNull(map.putIfAbsent(first), "A new id should be added");
+        assertSame(first, map.get(1));
+        assertNull(map.get(2));
+
+        Punishment duplicate = punishment(1);
+        assertSame(first, map.putIfAbsent(duplicate), "The punishment already known by the id should be kept");
+        assertSame(first, map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void shouldKeepEntriesWhenGrowing() {
+        PunishmentIdMap map = new PunishmentIdMap();
+        List<Punishment> added = new ArrayList<>();
+        // Far beyond the initial capacity of 16, so the table is resized several times
+        for (int id = 0; id < 10_000; id++) {
+            Punishment punishment = punishment(id);
+            added.add(punishment);
+            assertNull(map.putIfAbsent(punishment));
+        }
+        assertEquals(added.size(), map.size());
+        for (Punishment punishment : added) {
+            assertSame(punishment, map.get(punishment.getId().getAsInt()));
+        }
+        assertNull(map.get(10_000));
+    }
+
+    @Test
+    public void shouldFindRemainingEntriesAfterRemoval() {
+        PunishmentIdMap map = new PunishmentIdMap();
+        for (int id = 0; id < 1000; id++) {
+            map.putIfAbsent(punishment(id));
+        }
+        for (int id = 0; id < 1000; id += 3) {
+            map.remove(id);
+        }
+        map.remove(5000);
+
+        for (int id = 0; id < 1000; id++) {
+            Punishment found = map.get(id);
+            if (id % 3 == 0) {
+                assertNull(found, "Removed id " + id + " should not be found");
+            } else {
+                assertNotNull(found, "Id " + id + " should still be found after removing others of its run");
+                assertEquals(id, found.getId().getAsInt());
+            }
+        }
+        assertEquals(666, map.size());
+    }
+
+    @Test
+    public void shouldRemoveAllLoadedPunishments() {
+        PunishmentIdMap map = new PunishmentIdMap();
+        Punishment loaded = punishment(7);
+        Punishment other = punishment(8);
+        Punishment unsaved = new Punishment(UUID.randomUUID(), "name", "operator", null, 0, -1, PunishmentType.BAN);
+        map.putIfAbsent(loaded);
+        map.putIfAbsent(other);
+
+        map.removeAll(Arrays.asList(loaded, unsaved));
+        assertNull(map.get(7));
+        assertSame(other, map.get(8));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void shouldBehaveLikeHashMap() {
+        PunishmentIdMap map = new PunishmentIdMap();
+        Map<Integer, Punishment> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // A small range of ids, so entries are added and removed again and runs form and break up
+            int id = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                map.remove(id);
+                expected.remove(id);
+            } else {
+                Punishment punishment = punishment(id);
+                assertSame(expected.putIfAbsent(id, punishment), map.putIfAbsent(punishment));
+            }
+            assertSame(expected.get(id), map.get(id));
+        }
+        assertEquals(expected.size(), map.size());
+        for (int id = 0; id < 2000; id++) {
+            assertSame(expected.get(id), map.get(id), "Id " + id);
+        }
+    }
+
+    private static Punishment punishment(int id) {
+        Punishment punishment = new Punishment(UUID.randomUUID(), "name", "operator", null, 0, -1, PunishmentType.BAN);
+        punishment.setId(id);
+        return punishment;
+    }
+}
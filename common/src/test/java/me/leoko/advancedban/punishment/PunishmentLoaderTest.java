@@ -0,0 +1,116 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.TestAdvancedBan;
+import me.leoko.advancedban.manager.TimeManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PunishmentLoaderTest {
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        TestAdvancedBan.enableShared();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedIdentifiers() {
+        PunishmentLoader loader = loader(new AtomicLong());
+        loader.setLimits(2, 60_000);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        loader.load(first);
+        loader.load(second);
+        loader.load(first);
+        assertEquals(1, loader.getHits());
+
+        // The second identifier is the least recently used one now
+        loader.load(UUID.randomUUID());
+        loader.load(first);
+        assertEquals(2, loader.getHits());
+        loader.load(second);
+        assertEquals(2, loader.getHits(), "The second identifier should have been evicted");
+        assertEquals(4, loader.getMisses());
+    }
+
+    @Test
+    public void shouldExpireResultsAfterTheCacheTime() {
+        AtomicLong clock = new AtomicLong();
+        PunishmentLoader loader = loader(clock);
+        loader.setLimits(10, 60_000);
+        UUID uuid = UUID.randomUUID();
+        loader.load(uuid);
+
+        clock.set(59_999);
+        loader.load(uuid);
+        assertEquals(1, loader.getHits());
+        clock.set(60_000);
+        loader.load(uuid);
+        assertEquals(1, loader.getHits(), "The result should have expired");
+        assertEquals(2, loader.getMisses());
+    }
+
+    @Test
+    public void shouldOnlyReuseRecentResultsForLogins() {
+        AtomicLong clock = new AtomicLong();
+        PunishmentLoader loader = loader(clock);
+        loader.setLimits(10, 60_000);
+        UUID uuid = UUID.randomUUID();
+        loader.load(uuid);
+
+        clock.set(PunishmentLoader.RECONNECT_TIME - 1);
+        loader.loadForLogin(uuid);
+        assertEquals(1, loader.getHits());
+        clock.set(PunishmentLoader.RECONNECT_TIME);
+        loader.loadForLogin(uuid);
+        assertEquals(1, loader.getHits(), "Joining players should not get older results");
+        loader.load(uuid);
+        assertEquals(2, loader.getHits(), "The result of the login should be cached as well");
+    }
+
+    @Test
+    public void shouldNotCacheIfDisabled() {
+        PunishmentLoader loader = loader(new AtomicLong());
+        loader.setLimits(0, 60_000);
+        UUID uuid = UUID.randomUUID();
+        loader.load(uuid);
+        loader.load(uuid);
+        assertEquals(0, loader.getHits());
+    }
+
+    @Test
+    public void shouldInvalidateOnChanges() {
+        PunishmentManager manager = PunishmentManager.getInstance();
+        UUID uuid = UUID.randomUUID();
+        assertFalse(manager.isBanned(uuid));
+        long hits = manager.getOfflineCacheHits();
+        assertFalse(manager.isBanned(uuid));
+        assertEquals(hits + 1, manager.getOfflineCacheHits(), "The second lookup should be cached");
+
+        Punishment ban = new Punishment(uuid, "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.BAN);
+        manager.addPunishment(ban, true);
+        Optional<Punishment> loaded = manager.getPunishment(uuid, PunishmentType.BAN, true);
+        assertTrue(loaded.isPresent(), "Adding should invalidate the cached lookup");
+        assertFalse(loaded.get().getReason().isPresent());
+
+        ban.setReason("Updated");
+        manager.updatePunishment(ban);
+        List<Punishment> punishments = manager.getPunishments(uuid, PunishmentType.BAN, true);
+        assertEquals(1, punishments.size());
+        assertEquals(Optional.of("Updated"), punishments.get(0).getReason(), "Updating should invalidate the cached lookup");
+
+        manager.deletePunishment(ban);
+        assertFalse(manager.isBanned(uuid), "Deleting should invalidate the cached lookup");
+    }
+
+    private static PunishmentLoader loader(AtomicLong clock) {
+        return new PunishmentLoader(PunishmentManager.getInstance()::getPunishmentFromResultSet, clock::get);
+    }
+}
@@ -0,0 +1,117 @@
+package me.leoko.advancedban.punishment;
+
+import me.leoko.advancedban.TestAdvancedBan;
+import me.leoko.advancedban.manager.TimeManager;
+import me.leoko.advancedban.utils.Subnet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubnetBansTest {
+    private static int nextId = 1;
+
+    @BeforeAll
+    public static void onEnable() throws IOException {
+        TestAdvancedBan.enableShared();
+    }
+
+    @Test
+    public void shouldFindBansOfContainingSubnets() throws UnknownHostException {
+        SubnetBans bans = new SubnetBans();
+        Punishment ban = ban("10.1.0.0/16", -1);
+        assertTrue(bans.add(ban));
+
+        assertEquals(Optional.of(ban), bans.getBan(address("10.1.2.3")));
+        assertEquals(Optional.of(ban), bans.getBan(address("10.1.255.255")));
+        assertFalse(bans.getBan(address("10.2.0.1")).isPresent());
+
+        bans.remove(Subnet.parse("10.1.0.0/16"), ban.getId().getAsInt());
+        assertFalse(bans.getBan(address("10.1.2.3")).isPresent(), "The removed ban should no longer be found");
+    }
+
+    @Test
+    public void shouldOnlyAddSubnetBans() throws UnknownHostException {
+        SubnetBans bans = new SubnetBans();
+        Punishment mute = new Punishment(Subnet.parse("10.0.0.0/8"), "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.MUTE);
+        assertFalse(bans.add(mute));
+        Punishment ipBan = new Punishment(address("10.0.0.1"), "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.IP_BAN);
+        assertFalse(bans.add(ipBan));
+        assertFalse(bans.getBan(address("10.0.0.1")).isPresent());
+    }
+
+    @Test
+    public void shouldPreferTheNarrowestSubnet() throws UnknownHostException {
+        SubnetBans bans = new SubnetBans();
+        Punishment narrow = ban("192.168.1.0/24", -1);
+        Punishment wide = ban("192.168.0.0/16", -1);
+        bans.add(narrow);
+        bans.add(wide);
+
+        assertEquals(Optional.of(narrow), bans.getBan(address("192.168.1.7")));
+        assertEquals(Optional.of(wide), bans.getBan(address("192.168.2.7")));
+
+        bans.remove(Subnet.parse("192.168.1.0/24"), narrow.getId().getAsInt());
+        assertEquals(Optional.of(wide), bans.getBan(address("192.168.1.7")), "The wider ban should apply once the narrow one is gone");
+    }
+
+    @Test
+    public void shouldKeepIPv4AndIPv6Apart() throws UnknownHostException {
+        SubnetBans bans = new SubnetBans();
+        Punishment ipv4 = ban("10.0.0.0/8", -1);
+        Punishment ipv6 = ban("2001:db8::/32", -1);
+        bans.add(ipv4);
+        bans.add(ipv6);
+
+        assertEquals(Optional.of(ipv4), bans.getBan(address("10.20.30.40")));
+        assertEquals(Optional.of(ipv6), bans.getBan(address("2001:db8::1")));
+        // Starts with the same bits as the IPv4 subnet
+        assertFalse(bans.getBan(address("a00::1")).isPresent());
+        // Starts with the same bits as the IPv6 subnet
+        assertFalse(bans.getBan(address("32.1.13.184")).isPresent());
+    }
+
+    @Test
+    public void shouldSkipExpiredBans() throws UnknownHostException {
+        SubnetBans bans = new SubnetBans();
+        Punishment permanent = ban("172.16.0.0/12", -1);
+        Punishment expired = ban("172.16.5.0/24", TimeManager.getTime() - 1000);
+        bans.add(permanent);
+        bans.add(expired);
+
+        assertEquals(Optional.of(permanent), bans.getBan(address("172.16.5.1")), "The expired narrow ban should be skipped");
+
+        bans.remove(Subnet.parse("172.16.0.0/12"), permanent.getId().getAsInt());
+        assertFalse(bans.getBan(address("172.16.5.1")).isPresent());
+    }
+
+    @Test
+    public void shouldLoadCurrentSubnetBans() throws UnknownHostException {
+        PunishmentManager manager = PunishmentManager.getInstance();
+        Punishment ban = new Punishment(Subnet.parse("198.51.100.0/24"), "name", "Console", null, TimeManager.getTime(), -1, PunishmentType.IP_BAN);
+        manager.addPunishment(ban, true);
+
+        SubnetBans bans = new SubnetBans();
+        List<Punishment> loaded = bans.load(manager::getPunishmentFromResultSet);
+        assertTrue(loaded.contains(ban));
+        assertEquals(ban.getId(), bans.getBan(address("198.51.100.20")).map(Punishment::getId).orElse(null));
+        manager.deletePunishment(ban);
+    }
+
+    private static Punishment ban(String subnet, long end) {
+        Punishment punishment = new Punishment(Subnet.parse(subnet), "name", "Console", null, TimeManager.getTime(), end,
+                end < 0 ? PunishmentType.IP_BAN : PunishmentType.TEMP_IP_BAN);
+        punishment.setId(nextId++);
+        return punishment;
+    }
+
+    private static InetAddress address(String address) throws UnknownHostException {
+        return InetAddress.getByName(address);
+    }
+}
@@ -10,7 +10,10 @@ import me.leoko.advancedban.manager.UUIDManager;
 import me.leoko.advancedban.nukkit.event.PunishmentEvent;
 import me.leoko.advancedban.nukkit.event.RevokePunishmentEvent;
 import me.leoko.advancedban.punishment.Punishment;
+import me.leoko.advancedban.utils.IpKey;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Optional;
@@ -119,4 +122,10 @@ public class NukkitAdvancedBan extends AdvancedBan {
     protected void log(Level level, String msg) {
         plugin.getLogger().log(LogLevelConverter.convertLevel(level), msg);
     }
+
+    // Player addresses are literals, host names are only resolved if the server ever reports one
+    public static InetAddress toAddress(String address) throws UnknownHostException {
+        IpKey ip = IpKey.parse(address);
+        return ip != null ? ip.toInetAddress() : InetAddress.getByName(address);
+    }
 }
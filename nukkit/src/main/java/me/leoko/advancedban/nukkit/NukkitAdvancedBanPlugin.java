@@ -6,7 +6,6 @@ import me.leoko.advancedban.AdvancedBanLogger;
 import me.leoko.advancedban.nukkit.listener.ConnectionListener;
 import me.leoko.advancedban.nukkit.listener.MessageListener;
 
-import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 public class NukkitAdvancedBanPlugin extends PluginBase {
@@ -21,7 +20,7 @@ public class NukkitAdvancedBanPlugin extends PluginBase {
 
         for (Player player : getServer().getOnlinePlayers().values()) {
             try {
-                advancedBan.onPreLogin(player.getName(), player.getUniqueId(), InetAddress.getByName(player.getAddress())).ifPresent(player::kick);
+                advancedBan.onPreLogin(player.getName(), player.getUniqueId(), NukkitAdvancedBan.toAddress(player.getAddress())).ifPresent(player::kick);
             } catch (UnknownHostException e) {
                 AdvancedBanLogger.getInstance().warn("Error whilst resolving player's address");
             }
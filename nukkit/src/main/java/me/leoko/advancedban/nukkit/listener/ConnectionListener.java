@@ -7,9 +7,9 @@ import cn.nukkit.event.player.*;
 import lombok.RequiredArgsConstructor;
 import me.leoko.advancedban.AdvancedBan;
 import me.leoko.advancedban.AdvancedBanLogger;
+import me.leoko.advancedban.nukkit.NukkitAdvancedBan;
 import me.leoko.advancedban.nukkit.NukkitAdvancedBanPlayer;
 
-import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Optional;
 
@@ -20,7 +20,7 @@ public class ConnectionListener implements Listener {
     @EventHandler(priority = EventPriority.LOWEST)
     public void onConnect(PlayerAsyncPreLoginEvent event) {
         try {
-            Optional<String> result = advancedBan.onPreLogin(event.getName(), event.getUuid(), InetAddress.getByName(event.getAddress()));
+            Optional<String> result = advancedBan.onPreLogin(event.getName(), event.getUuid(), NukkitAdvancedBan.toAddress(event.getAddress()));
             if (result.isPresent()) {
                 event.setKickMessage(result.get());
                 event.setLoginResult(PlayerAsyncPreLoginEvent.LoginResult.KICK);